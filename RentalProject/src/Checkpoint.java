@@ -0,0 +1,75 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact snapshot of system state taken at an event log sequence number.
+ * The file is "CHECKPOINT,seq", the state lines, then "END,crc" covering
+ * everything above it. It is written to a temp file and renamed into place,
+ * so readers see either the previous checkpoint or the complete new one.
+ */
+public class Checkpoint {
+    private final long sequence;
+    private final List<String> lines;
+
+    public Checkpoint(long sequence, List<String> lines) {
+        this.sequence = sequence;
+        this.lines = lines;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        StringBuilder body = new StringBuilder();
+        body.append("CHECKPOINT,").append(sequence).append('\n');
+        for (String line : lines) {
+            body.append(line).append('\n');
+        }
+        String text = body.toString();
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.write(("END," + EventLog.checksum(text) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns null if there is no checkpoint or it fails validation
+    public static Checkpoint read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            List<String> all = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            if (all.size() < 2 || !all.get(0).startsWith("CHECKPOINT,")
+                    || !all.get(all.size() - 1).startsWith("END,")) {
+                System.out.println("Ignoring incomplete checkpoint " + file.getName());
+                return null;
+            }
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < all.size() - 1; i++) {
+                body.append(all.get(i)).append('\n');
+            }
+            if (!all.get(all.size() - 1).equals("END," + EventLog.checksum(body.toString()))) {
+                System.out.println("Ignoring corrupt checkpoint " + file.getName());
+                return null;
+            }
+            long sequence = Long.parseLong(all.get(0).substring("CHECKPOINT,".length()));
+            return new Checkpoint(sequence, new ArrayList<>(all.subList(1, all.size() - 1)));
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Error reading checkpoint: " + e.getMessage());
+            return null;
+        }
+    }
+}
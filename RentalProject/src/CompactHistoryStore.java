@@ -0,0 +1,222 @@
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Rental records stored as parallel primitive columns instead of one object
+ * per record: plate key, customer ordinal, epoch day, amount in cents and a
+ * type code. The columns live in Java arrays, or in a single direct
+ * ByteBuffer outside the heap. Vehicles, customers and record types are
+ * kept once each in small lookup tables.
+ *
+ * Amounts are stored as whole cents. Each plate and customer ID resolves to
+ * the first Vehicle or Customer recorded under it.
+ *
+ * Rows are only ever appended. add runs under the store's monitor and
+ * publishes a row by bumping the volatile size after writing it, and arrays
+ * are replaced by grown copies rather than resized, so reads of rows below
+ * size take no lock.
+ */
+public class CompactHistoryStore {
+    // Off-heap row layout: plate(4) customer(4) day(4) cents(8) type(1)
+    private static final int ROW_BYTES = 21;
+
+    private final boolean offHeap;
+    private volatile int size;
+
+    // Replaced, never resized, when they grow; read without the monitor
+    private volatile int[] plateKeys;
+    private volatile int[] customerOrdinals;
+    private volatile int[] epochDays;
+    private volatile long[] amountCents;
+    private volatile byte[] types;
+    private volatile ByteBuffer rows;
+
+    private final Map<Integer, Vehicle> vehicles = new ConcurrentHashMap<>();
+    private volatile Customer[] customers = new Customer[16];
+    // Guarded by this
+    private final Map<String, Integer> customerOrdinalsById = new HashMap<>();
+    private final List<String> typeNames = new CopyOnWriteArrayList<>(Arrays.asList("RENT", "RETURN"));
+
+    public CompactHistoryStore(boolean offHeap) {
+        this(offHeap, 1024);
+    }
+
+    public CompactHistoryStore(boolean offHeap, int initialCapacity) {
+        this.offHeap = offHeap;
+        int capacity = Math.max(16, initialCapacity);
+        if (offHeap) {
+            rows = ByteBuffer.allocateDirect(capacity * ROW_BYTES);
+        } else {
+            plateKeys = new int[capacity];
+            customerOrdinals = new int[capacity];
+            epochDays = new int[capacity];
+            amountCents = new long[capacity];
+            types = new byte[capacity];
+        }
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    // Returns the new record's ordinal
+    public synchronized int add(RentalRecord record) {
+        Vehicle vehicle = record.getVehicle();
+        int plateKey = vehicle.getPlateKey();
+        if (plateKey == PlateCodec.INVALID) {
+            throw new IllegalArgumentException("Compact history needs vehicles with a license plate");
+        }
+        vehicles.putIfAbsent(plateKey, vehicle);
+        int customer = customerOrdinal(record.getCustomer());
+        int day = (int) record.getRecordDate().toEpochDay();
+        long cents = Math.round(record.getTotalAmount() * 100);
+        byte type = typeCode(record.getRecordType());
+
+        int ordinal = size;
+        ensureCapacity(ordinal + 1);
+        if (offHeap) {
+            int base = ordinal * ROW_BYTES;
+            rows.putInt(base, plateKey);
+            rows.putInt(base + 4, customer);
+            rows.putInt(base + 8, day);
+            rows.putLong(base + 12, cents);
+            rows.put(base + 20, type);
+        } else {
+            plateKeys[ordinal] = plateKey;
+            customerOrdinals[ordinal] = customer;
+            epochDays[ordinal] = day;
+            amountCents[ordinal] = cents;
+            types[ordinal] = type;
+        }
+        size = ordinal + 1;
+        return ordinal;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public RentalRecord get(int ordinal) {
+        int size = this.size;
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Ordinal: " + ordinal + ", Size: " + size);
+        }
+        return new View(this, ordinal);
+    }
+
+    public int plateKey(int ordinal) {
+        return offHeap ? rows.getInt(ordinal * ROW_BYTES) : plateKeys[ordinal];
+    }
+
+    public int customerOrdinal(int ordinal) {
+        return offHeap ? rows.getInt(ordinal * ROW_BYTES + 4) : customerOrdinals[ordinal];
+    }
+
+    public int epochDay(int ordinal) {
+        return offHeap ? rows.getInt(ordinal * ROW_BYTES + 8) : epochDays[ordinal];
+    }
+
+    public long amountCents(int ordinal) {
+        return offHeap ? rows.getLong(ordinal * ROW_BYTES + 12) : amountCents[ordinal];
+    }
+
+    public String recordType(int ordinal) {
+        return typeNames.get(offHeap ? rows.get(ordinal * ROW_BYTES + 20) : types[ordinal]);
+    }
+
+    public Vehicle vehicle(int ordinal) {
+        return vehicles.get(plateKey(ordinal));
+    }
+
+    public Customer customer(int ordinal) {
+        return customers[customerOrdinal(ordinal)];
+    }
+
+    private int customerOrdinal(Customer customer) {
+        Integer ordinal = customerOrdinalsById.get(customer.getCustomerId());
+        if (ordinal == null) {
+            ordinal = customerOrdinalsById.size();
+            Customer[] table = customers;
+            if (ordinal == table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            table[ordinal] = customer;
+            customers = table;
+            customerOrdinalsById.put(customer.getCustomerId(), ordinal);
+        }
+        return ordinal;
+    }
+
+    private byte typeCode(String recordType) {
+        int code = typeNames.indexOf(recordType);
+        if (code < 0) {
+            if (typeNames.size() == Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many record types");
+            }
+            code = typeNames.size();
+            typeNames.add(recordType);
+        }
+        return (byte) code;
+    }
+
+    private void ensureCapacity(int needed) {
+        int capacity = offHeap ? rows.capacity() / ROW_BYTES : types.length;
+        if (needed <= capacity) return;
+        int grown = Math.max(needed, capacity + (capacity >> 1));
+        if (offHeap) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(grown * ROW_BYTES);
+            ByteBuffer old = rows.duplicate();
+            old.position(0).limit(size * ROW_BYTES);
+            bigger.put(old);
+            rows = bigger;
+        } else {
+            plateKeys = Arrays.copyOf(plateKeys, grown);
+            customerOrdinals = Arrays.copyOf(customerOrdinals, grown);
+            epochDays = Arrays.copyOf(epochDays, grown);
+            amountCents = Arrays.copyOf(amountCents, grown);
+            types = Arrays.copyOf(types, grown);
+        }
+    }
+
+    // Flyweight over one row; reads the columns on every call
+    private static final class View extends RentalRecord {
+        private final CompactHistoryStore store;
+        private final int ordinal;
+
+        View(CompactHistoryStore store, int ordinal) {
+            this.store = store;
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public Vehicle getVehicle() {
+            return store.vehicle(ordinal);
+        }
+
+        @Override
+        public Customer getCustomer() {
+            return store.customer(ordinal);
+        }
+
+        @Override
+        public LocalDate getRecordDate() {
+            return LocalDate.ofEpochDay(store.epochDay(ordinal));
+        }
+
+        @Override
+        public double getTotalAmount() {
+            return store.amountCents(ordinal) / 100.0;
+        }
+
+        @Override
+        public String getRecordType() {
+            return store.recordType(ordinal);
+        }
+    }
+}
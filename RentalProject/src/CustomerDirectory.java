@@ -0,0 +1,298 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Type-ahead lookup over customer names, compared case-insensitively.
+ * Names are indexed twice: a prefix trie keyed on the name from the start
+ * of every word, so "smi" finds "Bob Smith", and a trigram index that finds
+ * the text anywhere in a name. Prefix hits rank ahead of mid-word hits;
+ * within each group an exact name comes first, then matches at the start
+ * of the name, then shorter names. Every match is ranked before the list
+ * is cut to the limit, keeping only the best so far in a bounded heap.
+ *
+ * The trie is a burst trie: a node holds up to BURST references to
+ * (customer, word start) in a flat bucket and only grows children once the
+ * bucket overflows, so the unique tail of each name (usually most of it)
+ * never gets a node of its own. Names themselves are never copied.
+ */
+public class CustomerDirectory {
+    private static final int BURST = 64;
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        // Children are kept sorted by label for binary search
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        IntList ends;                           // customers whose indexed text ends at this node
+        IntList bucketCustomers = new IntList(1);  // null once the node has burst
+        IntList bucketStarts = new IntList(1);
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i < 0 ? null : children[i];
+        }
+
+        Node childOrAdd(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) return children[i];
+            i = -i - 1;
+            char[] grownLabels = new char[labels.length + 1];
+            Node[] grownChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, grownLabels, 0, i);
+            System.arraycopy(children, 0, grownChildren, 0, i);
+            System.arraycopy(labels, i, grownLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, grownChildren, i + 1, children.length - i);
+            grownLabels[i] = label;
+            grownChildren[i] = new Node();
+            labels = grownLabels;
+            children = grownChildren;
+            return grownChildren[i];
+        }
+    }
+
+    private final Node root = new Node();
+    private final IntObjectMap<IntList> byTrigram = new IntObjectMap<>();
+    private final List<Customer> customers = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void add(Customer customer) {
+        String name = nameOf(customer);
+        lock.writeLock().lock();
+        try {
+            int ordinal = customers.size();
+            customers.add(customer);
+            for (int start = 0; start < name.length(); start++) {
+                if (name.charAt(start) != ' ' && (start == 0 || name.charAt(start - 1) == ' ')) {
+                    insert(name, ordinal, start);
+                }
+            }
+            for (int i = 0; i + 3 <= name.length(); i++) {
+                int key = trigram(name, i);
+                IntList postings = byTrigram.get(key);
+                if (postings == null) {
+                    postings = new IntList(1);
+                    byTrigram.put(key, postings);
+                }
+                // Ordinals only grow, so a repeated trigram in one name shows up as the last entry
+                if (postings.isEmpty() || postings.get(postings.size() - 1) != ordinal) {
+                    postings.add(ordinal);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return customers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit customers whose name contains the text, best matches first
+    public List<Customer> lookup(String text, int limit) {
+        String query = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        List<Customer> result = new ArrayList<>();
+        if (query.isEmpty() || limit <= 0) return result;
+        lock.readLock().lock();
+        try {
+            Comparator<Integer> rank = rank(query);
+            Set<Integer> prefixHits = new HashSet<>();
+            PriorityQueue<Integer> best = new PriorityQueue<>(rank.reversed());
+            prefixMatches(query, prefixHits, best, limit, rank);
+            List<Integer> ranked = drain(best, rank);
+            if (ranked.size() < limit && query.length() >= 3) {
+                substringMatches(query, prefixHits, best, limit - ranked.size(), rank);
+                ranked.addAll(drain(best, rank));
+            }
+            for (int ordinal : ranked) {
+                result.add(customers.get(ordinal));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(String name, int ordinal, int start) {
+        Node node = root;
+        int depth = 0;
+        while (node.bucketCustomers == null) {
+            if (start + depth == name.length()) {
+                addEnd(node, ordinal);
+                return;
+            }
+            node = node.childOrAdd(fold(name, start + depth));
+            depth++;
+        }
+        node.bucketCustomers.add(ordinal);
+        node.bucketStarts.add(start);
+        if (node.bucketCustomers.size() > BURST) {
+            burst(node, depth);
+        }
+    }
+
+    // Moves an overflowing bucket down one level, bursting any child that overflows in turn
+    private void burst(Node node, int depth) {
+        IntList ordinals = node.bucketCustomers;
+        IntList starts = node.bucketStarts;
+        node.bucketCustomers = null;
+        node.bucketStarts = null;
+        for (int i = 0; i < ordinals.size(); i++) {
+            int ordinal = ordinals.get(i);
+            int start = starts.get(i);
+            String name = nameOf(customers.get(ordinal));
+            if (start + depth == name.length()) {
+                addEnd(node, ordinal);
+            } else {
+                Node child = node.childOrAdd(fold(name, start + depth));
+                child.bucketCustomers.add(ordinal);
+                child.bucketStarts.add(start);
+            }
+        }
+        for (Node child : node.children) {
+            if (child.bucketCustomers != null && child.bucketCustomers.size() > BURST) {
+                burst(child, depth + 1);
+            }
+        }
+    }
+
+    private static void addEnd(Node node, int ordinal) {
+        if (node.ends == null) node.ends = new IntList(1);
+        node.ends.add(ordinal);
+    }
+
+    // Every customer with a word starting with the query goes into hits, and the best limit of them into best
+    private void prefixMatches(String query, Set<Integer> hits, PriorityQueue<Integer> best, int limit,
+                               Comparator<Integer> rank) {
+        Node node = root;
+        int depth = 0;
+        for (; depth < query.length(); depth++) {
+            if (node.bucketCustomers != null) {
+                // The path so far matched; compare the rest of the query against each bucket entry
+                for (int i = 0; i < node.bucketCustomers.size(); i++) {
+                    int ordinal = node.bucketCustomers.get(i);
+                    String name = nameOf(customers.get(ordinal));
+                    if (name.regionMatches(true, node.bucketStarts.get(i) + depth, query, depth,
+                                           query.length() - depth) && hits.add(ordinal)) {
+                        offer(best, ordinal, limit, rank);
+                    }
+                }
+                return;
+            }
+            node = node.child(query.charAt(depth));
+            if (node == null) return;
+        }
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(node);
+        while (!queue.isEmpty()) {
+            Node next = queue.poll();
+            offerAll(next.ends, hits, best, limit, rank);
+            offerAll(next.bucketCustomers, hits, best, limit, rank);
+            Collections.addAll(queue, next.children);
+        }
+    }
+
+    private static void offerAll(IntList ordinals, Set<Integer> hits, PriorityQueue<Integer> best, int limit,
+                                 Comparator<Integer> rank) {
+        for (int i = 0; ordinals != null && i < ordinals.size(); i++) {
+            if (hits.add(ordinals.get(i))) offer(best, ordinals.get(i), limit, rank);
+        }
+    }
+
+    // Keeps the best limit ordinals; the heap's head is the worst of them
+    private static void offer(PriorityQueue<Integer> best, int ordinal, int limit, Comparator<Integer> rank) {
+        if (best.size() < limit) {
+            best.add(ordinal);
+        } else if (rank.compare(ordinal, best.peek()) < 0) {
+            best.poll();
+            best.add(ordinal);
+        }
+    }
+
+    private static List<Integer> drain(PriorityQueue<Integer> best, Comparator<Integer> rank) {
+        List<Integer> ranked = new ArrayList<>(best);
+        best.clear();
+        ranked.sort(rank);
+        return ranked;
+    }
+
+    // Intersects the query's trigram postings, rarest first, and checks each survivor really contains the text
+    private void substringMatches(String query, Set<Integer> exclude, PriorityQueue<Integer> best, int limit,
+                                  Comparator<Integer> rank) {
+        List<IntList> postings = new ArrayList<>();
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            IntList list = byTrigram.get(trigram(query, i));
+            if (list == null) return;
+            postings.add(list);
+        }
+        postings.sort(Comparator.comparingInt(IntList::size));
+        IntList rarest = postings.get(0);
+        for (int i = 0; i < rarest.size(); i++) {
+            int ordinal = rarest.get(i);
+            boolean inAll = !exclude.contains(ordinal);
+            for (int p = 1; p < postings.size() && inAll; p++) {
+                inAll = contains(postings.get(p), ordinal);
+            }
+            if (inAll && indexOf(nameOf(customers.get(ordinal)), query) >= 0) {
+                offer(best, ordinal, limit, rank);
+            }
+        }
+    }
+
+    private Comparator<Integer> rank(String query) {
+        return Comparator.<Integer>comparingInt(o -> nameOf(customers.get(o)).equalsIgnoreCase(query) ? 0 : 1)
+            .thenComparingInt(o -> indexOf(nameOf(customers.get(o)), query) == 0 ? 0 : 1)
+            .thenComparingInt(o -> nameOf(customers.get(o)).length())
+            .thenComparingInt(o -> o);
+    }
+
+    // Case-insensitive indexOf for an already lower-cased query
+    private static int indexOf(String name, String query) {
+        for (int i = 0; i + query.length() <= name.length(); i++) {
+            if (name.regionMatches(true, i, query, 0, query.length())) return i;
+        }
+        return -1;
+    }
+
+    // Postings are in ordinal order
+    private static boolean contains(IntList postings, int ordinal) {
+        int low = 0;
+        int high = postings.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = postings.get(mid);
+            if (value < ordinal) low = mid + 1;
+            else if (value > ordinal) high = mid - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    // Three folded chars packed into a non-negative key; collisions are weeded out by the final check
+    private static int trigram(String text, int at) {
+        return (fold(text, at) & 0x3FF) << 20 | (fold(text, at + 1) & 0x3FF) << 10 | (fold(text, at + 2) & 0x3FF);
+    }
+
+    private static char fold(String text, int at) {
+        return Character.toLowerCase(text.charAt(at));
+    }
+
+    private static String nameOf(Customer customer) {
+        return customer.getCustomerName() == null ? "" : customer.getCustomerName();
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of state changes, written as "seq,crc,payload" lines.
+ * The log is split into segments named after the first sequence number they
+ * hold; a checkpoint at sequence N makes every segment before it obsolete.
+ */
+public class EventLog {
+    public interface Handler {
+        void apply(long sequence, String payload);
+    }
+
+    private static final String PREFIX = "rental_events-";
+    private static final String SUFFIX = ".log";
+
+    private final File directory;
+    private final GroupCommitWriter writer;
+    private long sequence;          // guarded by this
+    private String currentPath;     // guarded by this
+
+    public EventLog(File directory, GroupCommitWriter writer) {
+        this.directory = directory;
+        this.writer = writer;
+    }
+
+    /**
+     * Replays every intact entry after the given sequence number, in order.
+     * A torn or corrupt entry ends the log: the file is truncated there and
+     * any later segments are discarded. Returns the number of entries replayed.
+     */
+    public synchronized int recover(long afterSequence, Handler handler) {
+        sequence = afterSequence;
+        int replayed = 0;
+        List<File> segments = segments();
+        for (int s = 0; s < segments.size(); s++) {
+            File segment = segments.get(s);
+            byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(segment.toPath());
+            } catch (IOException e) {
+                System.out.println("Error reading event log " + segment + ": " + e.getMessage());
+                break;
+            }
+
+            int lineStart = 0;
+            boolean intact = true;
+            while (lineStart < bytes.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < bytes.length && bytes[lineEnd] != '\n') lineEnd++;
+                int contentEnd = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+                String line = lineEnd < bytes.length
+                    ? new String(bytes, lineStart, contentEnd - lineStart, StandardCharsets.UTF_8)
+                    : null; // no newline: the write was cut short
+                long entrySequence = line == null ? -1 : verify(line);
+                if (entrySequence < 0) {
+                    truncate(segment, lineStart);
+                    intact = false;
+                    break;
+                }
+                if (entrySequence > sequence) {
+                    handler.apply(entrySequence, line.substring(line.indexOf(',', line.indexOf(',') + 1) + 1));
+                    sequence = entrySequence;
+                    replayed++;
+                }
+                lineStart = lineEnd + 1;
+            }
+            if (!intact) {
+                for (File later : segments.subList(s + 1, segments.size())) {
+                    System.out.println("Discarding event log segment after corruption: " + later.getName());
+                    later.delete();
+                }
+                break;
+            }
+        }
+        currentPath = segmentFor(sequence + 1).getPath();
+        return replayed;
+    }
+
+    public synchronized long append(String payload) {
+        long next = ++sequence;
+        String body = next + "," + payload;
+        writer.append(currentPath, next + "," + checksum(body) + "," + payload);
+        return next;
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Runs capture while appends are blocked, then starts a new segment.
+     * Returns the sequence number the captured state corresponds to.
+     */
+    public synchronized long rollover(Runnable capture) {
+        capture.run();
+        currentPath = segmentFor(sequence + 1).getPath();
+        return sequence;
+    }
+
+    // Deletes segments made obsolete by a durable checkpoint at the given sequence
+    public void discardThrough(long checkpointSequence) {
+        String keep;
+        synchronized (this) {
+            keep = currentPath;
+        }
+        for (File segment : segments()) {
+            if (segment.getPath().equals(keep) || startOf(segment) > checkpointSequence) continue;
+            try {
+                writer.awaitDurable(writer.release(segment.getPath()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (UncheckedIOException e) {
+                // Kept for now; the next checkpoint tries again
+                System.out.println("Error closing " + segment.getName() + ": " + e.getMessage());
+                continue;
+            }
+            segment.delete();
+        }
+    }
+
+    private List<File> segments() {
+        List<File> result = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files != null) {
+            Collections.addAll(result, files);
+        }
+        result.sort((a, b) -> Long.compare(startOf(a), startOf(b)));
+        return result;
+    }
+
+    private File segmentFor(long firstSequence) {
+        return new File(directory, String.format("%s%019d%s", PREFIX, firstSequence, SUFFIX));
+    }
+
+    private static long startOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    // Returns the entry's sequence number, or -1 if the line is malformed or fails its checksum
+    private static long verify(String line) {
+        int first = line.indexOf(',');
+        int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+        if (second < 0) return -1;
+        try {
+            long entrySequence = Long.parseLong(line.substring(0, first));
+            String body = entrySequence + "," + line.substring(second + 1);
+            return line.substring(first + 1, second).equals(checksum(body)) ? entrySequence : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static String checksum(String text) {
+        CRC32 crc = new CRC32();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static void truncate(File segment, long length) {
+        System.out.println("Truncating torn event log entry in " + segment.getName() + " at byte " + length);
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        } catch (IOException e) {
+            System.out.println("Error truncating event log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vehicles partitioned by status, each partition in insertion order.
+ * Counts are O(1) and listing a status costs only the size of the result.
+ *
+ * Status listeners from different threads can run out of order, so refresh
+ * files the vehicle under the status it has now rather than trusting the
+ * transition it was told about; the last listener to run always wins.
+ */
+public class FleetIndex {
+    private final Map<Vehicle.VehicleStatus, LinkedHashSet<Vehicle>> byStatus =
+        new EnumMap<>(Vehicle.VehicleStatus.class);
+    private final Map<Vehicle, Vehicle.VehicleStatus> filedUnder = new IdentityHashMap<>();
+
+    public FleetIndex() {
+        for (Vehicle.VehicleStatus status : Vehicle.VehicleStatus.values()) {
+            byStatus.put(status, new LinkedHashSet<>());
+        }
+    }
+
+    // Adds a vehicle, or moves it if it is already indexed
+    public synchronized void refresh(Vehicle vehicle) {
+        Vehicle.VehicleStatus current = vehicle.getStatus();
+        Vehicle.VehicleStatus filed = filedUnder.put(vehicle, current);
+        if (filed == current) return;
+        if (filed != null) {
+            byStatus.get(filed).remove(vehicle);
+        }
+        byStatus.get(current).add(vehicle);
+    }
+
+    public synchronized int count(Vehicle.VehicleStatus status) {
+        return byStatus.get(status).size();
+    }
+
+    public synchronized int size() {
+        return filedUnder.size();
+    }
+
+    public synchronized List<Vehicle> list(Vehicle.VehicleStatus status) {
+        return new ArrayList<>(byStatus.get(status));
+    }
+
+    // Up to count vehicles of this status from position from on; walks from + count entries, copies only the page
+    public synchronized List<Vehicle> page(Vehicle.VehicleStatus status, int from, int count) {
+        List<Vehicle> page = new ArrayList<>(Math.max(0, Math.min(count, byStatus.get(status).size() - from)));
+        int position = 0;
+        for (Vehicle vehicle : byStatus.get(status)) {
+            if (page.size() == count) break;
+            if (position++ >= from) page.add(vehicle);
+        }
+        return page;
+    }
+}
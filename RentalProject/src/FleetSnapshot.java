@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One immutable version of the fleet, customers and rental history. Vehicle
+ * status is copied in rather than read from the live vehicle, so everything
+ * a snapshot reports belongs to the same moment however long it is held.
+ *
+ * Writers derive the next version with the with* methods, which share all
+ * unchanged structure with this one; RentalSystem publishes it through an
+ * AtomicReference, so readers never lock. History is append-only, so a
+ * snapshot keeps just how many records had been added when it was taken,
+ * and reads that prefix of RentalHistory without taking its monitor.
+ */
+public final class FleetSnapshot {
+    private final long version;
+    private final PersistentVector<Vehicle> vehicles;
+    // Status of vehicles.get(i) as of this version
+    private final PersistentVector<Vehicle.VehicleStatus> statuses;
+    private final PersistentVector<Customer> customers;
+    private final RentalHistory history;
+    // Records passed to history.addRecord before this version
+    private final int recordsAdded;
+
+    private FleetSnapshot(long version, PersistentVector<Vehicle> vehicles,
+                          PersistentVector<Vehicle.VehicleStatus> statuses, PersistentVector<Customer> customers,
+                          RentalHistory history, int recordsAdded) {
+        this.version = version;
+        this.vehicles = vehicles;
+        this.statuses = statuses;
+        this.customers = customers;
+        this.history = history;
+        this.recordsAdded = recordsAdded;
+    }
+
+    public static FleetSnapshot empty(RentalHistory history) {
+        return new FleetSnapshot(0, PersistentVector.<Vehicle>empty(), PersistentVector.<Vehicle.VehicleStatus>empty(),
+                                 PersistentVector.<Customer>empty(), history, 0);
+    }
+
+    // Increases by one with every published change
+    public long getVersion() {
+        return version;
+    }
+
+    public int getVehicleCount() {
+        return vehicles.size();
+    }
+
+    public Vehicle getVehicle(int index) {
+        return vehicles.get(index);
+    }
+
+    public Vehicle.VehicleStatus getStatus(int index) {
+        return statuses.get(index);
+    }
+
+    // Read-only, in the order the vehicles were added
+    public List<Vehicle> getVehicles() {
+        return vehicles.asList();
+    }
+
+    // Vehicles that had this status as of this version
+    public List<Vehicle> getVehicles(Vehicle.VehicleStatus status) {
+        List<Vehicle> result = new ArrayList<>();
+        for (int i = 0; i < vehicles.size(); i++) {
+            if (statuses.get(i) == status) result.add(vehicles.get(i));
+        }
+        return result;
+    }
+
+    // Read-only, in the order the customers were added
+    public List<Customer> getCustomers() {
+        return customers.asList();
+    }
+
+    // History as of this version; only waits if the history is still loading
+    public List<RentalRecord> getRentalHistory() {
+        return history.getRentalHistory(recordsAdded);
+    }
+
+    FleetSnapshot withVehicle(Vehicle vehicle) {
+        return new FleetSnapshot(version + 1, vehicles.add(vehicle), statuses.add(vehicle.getStatus()),
+                                 customers, history, recordsAdded);
+    }
+
+    FleetSnapshot withStatus(int index, Vehicle.VehicleStatus status) {
+        if (statuses.get(index) == status) return this;
+        return new FleetSnapshot(version + 1, vehicles, statuses.set(index, status),
+                                 customers, history, recordsAdded);
+    }
+
+    FleetSnapshot withCustomer(Customer customer) {
+        return new FleetSnapshot(version + 1, vehicles, statuses, customers.add(customer), history, recordsAdded);
+    }
+
+    FleetSnapshot withRecordAdded() {
+        return new FleetSnapshot(version + 1, vehicles, statuses, customers, history, recordsAdded + 1);
+    }
+
+    // Rereads every vehicle's status; for after loading, when statuses were restored without notice
+    FleetSnapshot withCurrentStatuses() {
+        PersistentVector<Vehicle.VehicleStatus> current = statuses;
+        for (int i = 0; i < vehicles.size(); i++) {
+            Vehicle.VehicleStatus status = vehicles.get(i).getStatus();
+            if (current.get(i) != status) current = current.set(i, status);
+        }
+        return new FleetSnapshot(version + 1, vehicles, current, customers, history, recordsAdded);
+    }
+}
@@ -0,0 +1,338 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends lines to data files from a single background thread.
+ * Callers enqueue into a bounded ring buffer and return immediately; the
+ * writer drains whatever has accumulated and writes it as one batch, keeping
+ * each file open between batches. Every line gets a sequence number that can
+ * be passed to awaitDurable.
+ *
+ * A failed write or flush fails its whole batch: awaitDurable throws the
+ * error as an UncheckedIOException for any line in it rather than report
+ * lines as saved that may not be. The file that failed is closed and
+ * reopened by the next line for it, so a transient error costs only that
+ * batch and later appends carry on normally.
+ */
+public class GroupCommitWriter implements Closeable {
+    public enum Durability {
+        FIRE_AND_FORGET,  // hand to the OS only when the buffer fills or the queue goes idle
+        FLUSH_ON_BATCH,   // flush to the OS after every batch
+        FSYNC_ON_BATCH    // flush and fsync after every batch
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final String path;
+        final String line;
+        final String renameTo;  // release entries only
+
+        Entry(long sequence, String path, String line, String renameTo) {
+            this.sequence = sequence;
+            this.path = path;
+            this.line = line;
+            this.renameTo = renameTo;
+        }
+    }
+
+    private static final Entry SHUTDOWN = new Entry(-1, null, null, null);
+
+    // A batch that was not fully written, from the sequence it is keyed under through this one
+    private static final class Failure {
+        final long through;
+        final IOException error;
+
+        Failure(long through, IOException error) {
+            this.through = through;
+            this.error = error;
+        }
+    }
+
+    private final Durability durability;
+    private final int maxBatch;
+    private final ArrayBlockingQueue<Entry> ring;
+    private final Map<String, FileOutputStream> streams = new HashMap<>();
+    private final Map<String, Writer> writers = new HashMap<>();
+    private final Thread thread;
+
+    private long lastSequence;               // guarded by this
+    private final Object durableLock = new Object();
+    private long durableSequence;            // guarded by durableLock; highest of the batches written
+    private final NavigableMap<Long, Failure> failures = new TreeMap<>();  // guarded by durableLock
+    private volatile boolean closed;
+
+    public GroupCommitWriter(Durability durability) {
+        this(durability, 8192, 512);
+    }
+
+    public GroupCommitWriter(Durability durability, int capacity, int maxBatch) {
+        this.durability = durability;
+        this.maxBatch = maxBatch;
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::run, "rental-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Queues one line for the given file and returns its sequence number.
+     * Blocks only while the ring buffer is full.
+     */
+    public synchronized long append(String path, String line) {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        long sequence = ++lastSequence;
+        try {
+            ring.put(new Entry(sequence, path, line, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing write", e);
+        }
+        return sequence;
+    }
+
+    // Closes the file once everything queued before this call has been written
+    public long release(String path) {
+        return rotate(path, null);
+    }
+
+    /**
+     * Closes the file once everything queued before this call has been
+     * written, then renames it. Lines queued afterwards start a new file.
+     */
+    public synchronized long rotate(String path, String renameTo) {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        long sequence = ++lastSequence;
+        try {
+            ring.put(new Entry(sequence, path, null, renameTo));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing release", e);
+        }
+        return sequence;
+    }
+
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    public long durableSequence() {
+        synchronized (durableLock) {
+            return durableSequence;
+        }
+    }
+
+    /**
+     * Blocks until the batch holding the line with this sequence number has
+     * been written out; throws UncheckedIOException if that batch failed.
+     */
+    public void awaitDurable(long sequence) throws InterruptedException {
+        synchronized (durableLock) {
+            checkFailure(sequence);
+            while (durableSequence < sequence) {
+                durableLock.wait();
+                checkFailure(sequence);
+            }
+        }
+    }
+
+    public boolean awaitDurable(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (durableLock) {
+            checkFailure(sequence);
+            while (durableSequence < sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(durableLock, remaining);
+                checkFailure(sequence);
+            }
+            return true;
+        }
+    }
+
+    // Waits for everything queued so far
+    public void flush() throws InterruptedException {
+        awaitDurable(lastSequence());
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        try {
+            ring.put(SHUTDOWN);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(maxBatch);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(ring.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            ring.drainTo(batch, maxBatch - 1);
+
+            long lowest = 0;
+            long highest = 0;
+            IOException error = null;
+            for (Entry entry : batch) {
+                if (entry == SHUTDOWN) {
+                    running = false;
+                    continue;
+                }
+                try {
+                    write(entry);
+                } catch (IOException e) {
+                    if (error == null) error = e;
+                }
+                if (lowest == 0) lowest = entry.sequence;
+                highest = entry.sequence;
+            }
+            batch.clear();
+
+            boolean idle = ring.isEmpty() || !running;
+            if (durability != Durability.FIRE_AND_FORGET || idle) {
+                try {
+                    sync(durability == Durability.FSYNC_ON_BATCH);
+                } catch (IOException e) {
+                    if (error == null) error = e;
+                }
+                if (error != null) {
+                    fail(lowest, highest, error);
+                } else if (highest > 0) {
+                    markDurable(highest);
+                }
+            } else if (error != null) {
+                fail(lowest, highest, error);
+            }
+        }
+        closeFiles();
+    }
+
+    private void write(Entry entry) throws IOException {
+        if (entry.line == null) {
+            closeFile(entry.path);
+            if (entry.renameTo != null) renameFile(entry.path, entry.renameTo);
+            return;
+        }
+        try {
+            Writer out = writers.get(entry.path);
+            if (out == null) {
+                FileOutputStream stream = new FileOutputStream(entry.path, true);
+                out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+                streams.put(entry.path, stream);
+                writers.put(entry.path, out);
+            }
+            out.write(entry.line);
+            out.write(System.lineSeparator());
+        } catch (IOException e) {
+            System.out.println("Error saving to " + entry.path + ": " + e.getMessage());
+            // The next line for this file opens it afresh
+            closeFile(entry.path);
+            throw e;
+        }
+    }
+
+    // Flushes every open file, even after one fails, closes the ones that failed and throws the first failure
+    private void sync(boolean force) throws IOException {
+        IOException first = null;
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, Writer> e : writers.entrySet()) {
+            try {
+                e.getValue().flush();
+                if (force) streams.get(e.getKey()).getChannel().force(false);
+            } catch (IOException ex) {
+                System.out.println("Error flushing " + e.getKey() + ": " + ex.getMessage());
+                if (first == null) first = ex;
+                failed.add(e.getKey());
+            }
+        }
+        for (String path : failed) {
+            closeFile(path);
+        }
+        if (first != null) throw first;
+    }
+
+    private void markDurable(long sequence) {
+        synchronized (durableLock) {
+            durableSequence = sequence;
+            durableLock.notifyAll();
+        }
+    }
+
+    // Waiters on lines from..through throw; later batches still become durable
+    private void fail(long from, long through, IOException error) {
+        synchronized (durableLock) {
+            failures.put(from, new Failure(through, error));
+            durableLock.notifyAll();
+        }
+    }
+
+    // Caller holds durableLock
+    private void checkFailure(long sequence) {
+        Map.Entry<Long, Failure> failed = failures.floorEntry(sequence);
+        if (failed != null && sequence <= failed.getValue().through) {
+            IOException error = failed.getValue().error;
+            throw new UncheckedIOException("Write failed: " + error.getMessage(), error);
+        }
+    }
+
+    private void closeFile(String path) {
+        Writer out = writers.remove(path);
+        streams.remove(path);
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.out.println("Error closing " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void renameFile(String path, String target) {
+        try {
+            if (new File(path).exists()) {
+                Files.move(Paths.get(path), Paths.get(target), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            System.out.println("Error renaming " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void closeFiles() {
+        for (Map.Entry<String, Writer> e : writers.entrySet()) {
+            try {
+                e.getValue().close();
+            } catch (IOException ex) {
+                System.out.println("Error closing " + e.getKey() + ": " + ex.getMessage());
+            }
+        }
+        writers.clear();
+        streams.clear();
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary columnar format for rental history.
+ *
+ * Layout (big-endian):
+ *   header    magic "RHSG", version, customer ID dictionary, record type dictionary
+ *   directory segment count, then per segment: rows, min day, max day, data offset
+ *   segments  per segment the columns back to back:
+ *             epoch day int[rows], plate key int[rows], customer ordinal int[rows],
+ *             type byte[rows], amount in cents long[rows]
+ *
+ * Readers skip whole segments using the min/max dates in the directory and
+ * only touch the columns a query asks for. Files are mapped whole, so they
+ * are limited to 2 GB; offsets outside the file are rejected on open.
+ *
+ * This is an export and import format used through main: RentalSystem
+ * loads and reports from rental_records.txt and its SegmentedRentalLog
+ * archive, whose block index gives date-range reads the same segment
+ * skipping.
+ */
+public class HistorySegmentFile {
+    public static final int MAGIC = 0x52485347; // "RHSG"
+    public static final short VERSION = 1;
+    public static final int DEFAULT_ROWS_PER_SEGMENT = 65536;
+    // day(4) plate(4) customer(4) type(1) cents(8)
+    private static final int ROW_BYTES = 21;
+
+    public interface RowConsumer {
+        void accept(int epochDay, int plateKey, String customerId, String recordType, long amountCents);
+    }
+
+    private static final class Segment {
+        int rows;
+        int minDay;
+        int maxDay;
+        // Start of the date column, checked against the file size on open
+        int offset;
+    }
+
+    private final ByteBuffer data;
+    private final String[] customerIds;
+    private final String[] recordTypes;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private HistorySegmentFile(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.getInt() != MAGIC) {
+            throw new IOException("Not a history segment file");
+        }
+        short version = data.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported history segment version " + version);
+        }
+        customerIds = readStrings(data);
+        recordTypes = readStrings(data);
+        int count = data.getInt();
+        for (int i = 0; i < count; i++) {
+            Segment segment = new Segment();
+            segment.rows = data.getInt();
+            segment.minDay = data.getInt();
+            segment.maxDay = data.getInt();
+            long offset = data.getLong();
+            if (segment.rows < 0 || offset < 0 || offset + (long) segment.rows * ROW_BYTES > data.limit()) {
+                throw new IOException("History segment " + i + " lies outside the file");
+            }
+            segment.offset = (int) offset;
+            segments.add(segment);
+        }
+    }
+
+    public static HistorySegmentFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("History segment file over 2 GB: " + file);
+            }
+            return new HistorySegmentFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int rowCount() {
+        int rows = 0;
+        for (Segment segment : segments) {
+            rows += segment.rows;
+        }
+        return rows;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    // Reads every column of every segment
+    public void scan(RowConsumer consumer) {
+        scan(Integer.MIN_VALUE, Integer.MAX_VALUE, consumer);
+    }
+
+    public void scan(LocalDate from, LocalDate to, RowConsumer consumer) {
+        scan((int) from.toEpochDay(), (int) to.toEpochDay(), consumer);
+    }
+
+    // Touches only the date column of segments that overlap the range
+    public int count(LocalDate from, LocalDate to) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        int matches = 0;
+        for (Segment segment : segments) {
+            if (segment.maxDay < fromDay || segment.minDay > toDay) continue;
+            if (segment.minDay >= fromDay && segment.maxDay <= toDay) {
+                matches += segment.rows;
+                continue;
+            }
+            for (int row = 0; row < segment.rows; row++) {
+                int day = data.getInt(segment.offset + row * 4);
+                if (day >= fromDay && day <= toDay) matches++;
+            }
+        }
+        return matches;
+    }
+
+    private void scan(int fromDay, int toDay, RowConsumer consumer) {
+        for (Segment segment : segments) {
+            if (segment.maxDay < fromDay || segment.minDay > toDay) continue;
+            int n = segment.rows;
+            int days = segment.offset;
+            int plates = days + n * 4;
+            int customers = plates + n * 4;
+            int types = customers + n * 4;
+            int amounts = types + n;
+            for (int row = 0; row < n; row++) {
+                int day = data.getInt(days + row * 4);
+                if (day < fromDay || day > toDay) continue;
+                consumer.accept(day,
+                                data.getInt(plates + row * 4),
+                                customerIds[data.getInt(customers + row * 4)],
+                                recordTypes[data.get(types + row)],
+                                data.getLong(amounts + row * 8));
+            }
+        }
+    }
+
+    /**
+     * Converts rental_records.txt lines into the binary format.
+     * Lines that don't parse are skipped and counted; returns the number written.
+     */
+    public static int fromText(File text, File binary, int rowsPerSegment) throws IOException {
+        IntList days = new IntList();
+        IntList plates = new IntList();
+        IntList customers = new IntList();
+        IntList types = new IntList();
+        long[] amounts = new long[1024];
+        Map<String, Integer> customerOrdinals = new HashMap<>();
+        List<String> customerIds = new ArrayList<>();
+        List<String> typeNames = new ArrayList<>();
+        int skipped = 0;
+
+        try (FileChannel channel = FileChannel.open(text.toPath(), StandardOpenOption.READ)) {
+            LineCursor cursor = new LineCursor(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            while (cursor.nextLine()) {
+                try {
+                    if (cursor.fieldCount() != 5) {
+                        skipped++;
+                        continue;
+                    }
+                    String type = cursor.nextKnown("RENT", "RETURN");
+                    int plate = cursor.nextPlateKey();
+                    String customerId = cursor.nextString();
+                    int day = cursor.nextEpochDay();
+                    long cents = Math.round(cursor.nextDouble() * 100);
+                    if (plate == PlateCodec.INVALID) {
+                        skipped++;
+                        continue;
+                    }
+                    Integer customer = customerOrdinals.get(customerId);
+                    if (customer == null) {
+                        customer = customerIds.size();
+                        customerIds.add(customerId);
+                        customerOrdinals.put(customerId, customer);
+                    }
+                    int typeCode = typeNames.indexOf(type);
+                    if (typeCode < 0) {
+                        if (typeNames.size() == Byte.MAX_VALUE) throw new IllegalArgumentException("Too many record types");
+                        typeCode = typeNames.size();
+                        typeNames.add(type);
+                    }
+                    if (days.size() == amounts.length) {
+                        amounts = Arrays.copyOf(amounts, amounts.length * 2);
+                    }
+                    amounts[days.size()] = cents;
+                    days.add(day);
+                    plates.add(plate);
+                    customers.add(customer);
+                    types.add(typeCode);
+                } catch (RuntimeException e) {
+                    skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            System.out.println("Skipped " + skipped + " unparseable lines converting " + text.getName());
+        }
+
+        int rows = days.size();
+        int segmentCount = (rows + rowsPerSegment - 1) / rowsPerSegment;
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        writeStrings(header, customerIds);
+        writeStrings(header, typeNames);
+        header.writeInt(segmentCount);
+        long offset = headerBytes.size() + (long) segmentCount * 20;
+        if (offset + (long) rows * ROW_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Too many records for one history segment file: " + rows);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binary), 1 << 16))) {
+            out.write(headerBytes.toByteArray());
+            for (int s = 0; s < segmentCount; s++) {
+                int start = s * rowsPerSegment;
+                int end = Math.min(rows, start + rowsPerSegment);
+                int minDay = Integer.MAX_VALUE;
+                int maxDay = Integer.MIN_VALUE;
+                for (int i = start; i < end; i++) {
+                    minDay = Math.min(minDay, days.get(i));
+                    maxDay = Math.max(maxDay, days.get(i));
+                }
+                out.writeInt(end - start);
+                out.writeInt(minDay);
+                out.writeInt(maxDay);
+                out.writeLong(offset);
+                offset += (long) (end - start) * ROW_BYTES;
+            }
+            for (int s = 0; s < segmentCount; s++) {
+                int start = s * rowsPerSegment;
+                int end = Math.min(rows, start + rowsPerSegment);
+                for (int i = start; i < end; i++) out.writeInt(days.get(i));
+                for (int i = start; i < end; i++) out.writeInt(plates.get(i));
+                for (int i = start; i < end; i++) out.writeInt(customers.get(i));
+                for (int i = start; i < end; i++) out.writeByte(types.get(i));
+                for (int i = start; i < end; i++) out.writeLong(amounts[i]);
+            }
+        }
+        return rows;
+    }
+
+    // Writes the rows back out in the rental_records.txt format
+    public static int toText(File binary, File text) throws IOException {
+        HistorySegmentFile file = open(binary);
+        int[] rows = {0};
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(text), StandardCharsets.UTF_8)))) {
+            file.scan((day, plate, customerId, type, cents) -> {
+                out.println(type + "," + PlateCodec.decode(plate) + "," + customerId + ","
+                            + LocalDate.ofEpochDay(day) + "," + (cents / 100.0));
+                rows[0]++;
+            });
+        }
+        return rows[0];
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    // writeUTF output is modified UTF-8 (NUL and supplementary characters differ), so readUTF decodes it
+    private static String[] readStrings(ByteBuffer data) throws IOException {
+        String[] values = new String[data.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte[] encoded = new byte[2 + (data.getShort(data.position()) & 0xFFFF)];
+            data.get(encoded);
+            values[i] = new DataInputStream(new ByteArrayInputStream(encoded)).readUTF();
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("to-binary") || args[0].equals("to-text"))) {
+            System.out.println("Usage: HistorySegmentFile to-binary|to-text <input> <output>");
+            return;
+        }
+        File in = new File(args[1]);
+        File out = new File(args[2]);
+        int rows = args[0].equals("to-binary")
+            ? fromText(in, out, DEFAULT_ROWS_PER_SEGMENT)
+            : toText(in, out);
+        System.out.println("Converted " + rows + " records to " + out);
+    }
+}
@@ -0,0 +1,96 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Bloom filter over int keys. Archived rental log blocks carry one for
+ * their plates and one for their customers, so a lookup can skip every
+ * block that can't hold the key without inflating it. It never misses a key
+ * it was given; at BITS_PER_KEY bits per key about one lookup in fifty
+ * reports a key that isn't there.
+ */
+public final class KeyFilter {
+    private static final int BITS_PER_KEY = 8;
+    private static final int HASHES = 5;
+
+    private final long[] words;
+    private final int bits;
+
+    public KeyFilter(int expectedKeys) {
+        this(new long[(Math.max(64, expectedKeys * BITS_PER_KEY) + 63) >>> 6]);
+    }
+
+    private KeyFilter(long[] words) {
+        this.words = words;
+        this.bits = words.length << 6;
+    }
+
+    // Sized for the distinct keys among these
+    public static KeyFilter of(int[] keys) {
+        int[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) distinct++;
+        }
+        KeyFilter filter = new KeyFilter(distinct);
+        for (int key : sorted) {
+            filter.add(key);
+        }
+        return filter;
+    }
+
+    // Customer IDs and other text keys go in by hash
+    public static int keyOf(String text) {
+        return text.hashCode();
+    }
+
+    public void add(int key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(int key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            if ((words[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // Base64 of the bit words, for the segment index
+    public String encode() {
+        ByteBuffer bytes = ByteBuffer.allocate(words.length * 8);
+        bytes.asLongBuffer().put(words);
+        return Base64.getEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    public static KeyFilter decode(String text) {
+        ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(text));
+        long[] words = new long[bytes.remaining() / 8];
+        if (words.length == 0) {
+            throw new IllegalArgumentException("Empty key filter");
+        }
+        bytes.asLongBuffer().get(words);
+        return new KeyFilter(words);
+    }
+
+    // The 64-bit finalizer from MurmurHash3
+    private static long mix(int key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,235 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks comma-separated lines in a byte buffer. Numeric fields are parsed
+ * straight from the bytes; only fields read with nextString allocate.
+ */
+public class LineCursor {
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int lineStart;
+    private int lineEnd;    // exclusive, without \r\n
+    private int nextLine;
+    private int position;
+    private byte[] scratch = new byte[64];
+
+    public LineCursor(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.nextLine = buffer.position();
+    }
+
+    // A cursor already on the single line given, for text that isn't read from a file
+    public static LineCursor of(String line) {
+        LineCursor cursor = new LineCursor(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+        cursor.nextLine();
+        return cursor;
+    }
+
+    // Advances to the next non-blank line; false at end of buffer
+    public boolean nextLine() {
+        while (nextLine < limit) {
+            lineStart = nextLine;
+            int end = lineStart;
+            while (end < limit && buffer.get(end) != '\n') end++;
+            nextLine = end + 1;
+            if (end > lineStart && buffer.get(end - 1) == '\r') end--;
+            lineEnd = end;
+            position = lineStart;
+            if (lineEnd > lineStart) return true;
+        }
+        return false;
+    }
+
+    // Goes back to the first field of the current line
+    public void rewind() {
+        position = lineStart;
+    }
+
+    public boolean hasMoreFields() {
+        return position <= lineEnd;
+    }
+
+    public int fieldCount() {
+        int count = 1;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buffer.get(i) == ',') count++;
+        }
+        return count;
+    }
+
+    public void skipField() {
+        position = fieldEnd() + 1;
+    }
+
+    public String nextString() {
+        int end = fieldEnd();
+        int length = end - position;
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(position + i);
+        }
+        position = end + 1;
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Returns the matching constant without allocating, or a new String if none match
+    public String nextKnown(String... values) {
+        int end = fieldEnd();
+        for (String value : values) {
+            if (value.length() != end - position) continue;
+            int i = 0;
+            while (i < value.length() && buffer.get(position + i) == value.charAt(i)) i++;
+            if (i == value.length()) {
+                position = end + 1;
+                return value;
+            }
+        }
+        return nextString();
+    }
+
+    // Canonical value from the dictionary; a spelling it has seen before costs no allocation
+    public String nextName(NameDictionary dictionary) {
+        int end = fieldEnd();
+        String known = dictionary.lookup(buffer, position, end);
+        if (known != null) {
+            position = end + 1;
+            return known;
+        }
+        return dictionary.canonical(nextString());
+    }
+
+    public int nextInt() {
+        int end = fieldEnd();
+        int i = position;
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative) i++;
+        if (i == end) throw new NumberFormatException("Empty number in line: " + line());
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException("Bad integer in line: " + line());
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) throw new NumberFormatException("Integer overflow in line: " + line());
+        }
+        position = end + 1;
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) throw new NumberFormatException("Integer overflow in line: " + line());
+        return (int) value;
+    }
+
+    // Plain decimals are parsed exactly from the bytes; anything else falls back to Double.parseDouble
+    public double nextDouble() {
+        int end = fieldEnd();
+        int i = position;
+        boolean negative = i < end && buffer.get(i) == '-';
+        if (negative) i++;
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (b >= '0' && b <= '9' && digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fraction >= 0) fraction++;
+            } else {
+                break;
+            }
+        }
+        if (i != end || digits == 0) {
+            return Double.parseDouble(nextString());
+        }
+        position = end + 1;
+        double value = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+        return negative ? -value : value;
+    }
+
+    public boolean nextBoolean() {
+        int end = fieldEnd();
+        boolean value = end - position == 4
+            && (buffer.get(position) | 0x20) == 't' && (buffer.get(position + 1) | 0x20) == 'r'
+            && (buffer.get(position + 2) | 0x20) == 'u' && (buffer.get(position + 3) | 0x20) == 'e';
+        position = end + 1;
+        return value;  // same as Boolean.parseBoolean
+    }
+
+    // Returns PlateCodec.INVALID for anything that isn't AAA999
+    public int nextPlateKey() {
+        int end = fieldEnd();
+        int key = PlateCodec.INVALID;
+        if (end - position == 6) {
+            key = 0;
+            for (int i = 0; i < 6 && key != PlateCodec.INVALID; i++) {
+                int c = buffer.get(position + i);
+                if (i < 3) {
+                    c |= 0x20;
+                    key = c >= 'a' && c <= 'z' ? key * 26 + (c - 'a') : PlateCodec.INVALID;
+                } else {
+                    key = c >= '0' && c <= '9' ? key * 10 + (c - '0') : PlateCodec.INVALID;
+                }
+            }
+        }
+        position = end + 1;
+        return key;
+    }
+
+    // Parses yyyy-MM-dd into an epoch day
+    public int nextEpochDay() {
+        int end = fieldEnd();
+        if (end - position != 10 || buffer.get(position + 4) != '-' || buffer.get(position + 7) != '-') {
+            throw new NumberFormatException("Bad date in line: " + line());
+        }
+        int year = digits(position, 4);
+        int month = digits(position + 5, 2);
+        int day = digits(position + 8, 2);
+        position = end + 1;
+        return (int) LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    public String[] split() {
+        List<String> fields = new ArrayList<>();
+        while (hasMoreFields()) {
+            fields.add(nextString());
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    public String line() {
+        byte[] bytes = new byte[lineEnd - lineStart];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(lineStart + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int fieldEnd() {
+        if (position > lineEnd) {
+            throw new NumberFormatException("Missing field in line: " + line());
+        }
+        int end = position;
+        while (end < lineEnd && buffer.get(end) != ',') end++;
+        return end;
+    }
+
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException("Bad date in line: " + line());
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,119 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical, shared instances of free-text names such as vehicle makes and
+ * models. A fleet repeats a few hundred distinct values across every vehicle,
+ * so each value is capitalised once and every vehicle holds the same String.
+ *
+ * Spellings already seen ("toyota", "TOYOTA ") map straight to their canonical
+ * value, and the loaders can look a spelling up from the raw file bytes, so a
+ * repeated name costs no allocation at all.
+ */
+public class NameDictionary {
+    // Past this many spellings new variants are still canonicalised, just not remembered
+    private static final int MAX_SPELLINGS = 1 << 16;
+
+    private static final class Spelling {
+        final byte[] bytes;
+        final int hash;
+        final String canonical;
+
+        Spelling(byte[] bytes, String canonical) {
+            this.bytes = bytes;
+            this.hash = hash(bytes);
+            this.canonical = canonical;
+        }
+
+        boolean matches(ByteBuffer buffer, int from, int to) {
+            if (bytes.length != to - from) return false;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != buffer.get(from + i)) return false;
+            }
+            return true;
+        }
+    }
+
+    private final ConcurrentHashMap<String, String> canonicalBySpelling = new ConcurrentHashMap<>();
+    // Open addressing over UTF-8 spellings; readers never lock, writers synchronize
+    private volatile Spelling[] table = new Spelling[64];
+    private int spellings;
+    private int values;
+
+    // The shared, capitalised form of value; null for null or blank input
+    public String canonical(String value) {
+        if (value == null) return null;
+        String shared = canonicalBySpelling.get(value);
+        if (shared != null) return shared;
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) return null;
+        String capitalized = trimmed.substring(0, 1).toUpperCase() + trimmed.substring(1).toLowerCase();
+        return remember(value, capitalized);
+    }
+
+    // The canonical value for a spelling held in buffer[from, to), or null if it hasn't been seen
+    public String lookup(ByteBuffer buffer, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        Spelling[] slots = table;
+        int mask = slots.length - 1;
+        for (int i = hash & mask; slots[i] != null; i = (i + 1) & mask) {
+            if (slots[i].hash == hash && slots[i].matches(buffer, from, to)) {
+                return slots[i].canonical;
+            }
+        }
+        return null;
+    }
+
+    // Distinct canonical values
+    public synchronized int size() {
+        return values;
+    }
+
+    private synchronized String remember(String spelling, String capitalized) {
+        String shared = canonicalBySpelling.get(capitalized);
+        if (shared == null) {
+            shared = capitalized;
+            values++;
+            add(capitalized, shared);
+        }
+        if (!spelling.equals(capitalized) && spellings < MAX_SPELLINGS) {
+            add(spelling, shared);
+        }
+        return shared;
+    }
+
+    private void add(String spelling, String shared) {
+        if (canonicalBySpelling.putIfAbsent(spelling, shared) != null) return;
+        spellings++;
+        Spelling[] slots = table;
+        if (spellings * 2 > slots.length) {
+            Spelling[] grown = new Spelling[slots.length * 2];
+            for (Spelling entry : slots) {
+                if (entry != null) insert(grown, entry);
+            }
+            slots = grown;
+        }
+        // Spelling is immutable, so a reader racing this store sees null or a complete entry
+        insert(slots, new Spelling(spelling.getBytes(StandardCharsets.UTF_8), shared));
+        table = slots;
+    }
+
+    private static void insert(Spelling[] slots, Spelling entry) {
+        int mask = slots.length - 1;
+        int i = entry.hash & mask;
+        while (slots[i] != null) i = (i + 1) & mask;
+        slots[i] = entry;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 1;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,161 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pairs RENT and RETURN records as they are appended. Every vehicle that is
+ * out has its RENT record here, so "who has this car" is a single lookup,
+ * and each RETURN closes that rental into a table of (vehicle, customer,
+ * rented, returned) intervals. Durations then never need a history scan.
+ *
+ * Live records go through open and close. At startup the open rentals come
+ * from the checkpoint and event log (restoreOpen, restoreReturned) and the
+ * intervals from replaying the hot rental log (replay), so nothing is
+ * counted twice. Archived log segments are not replayed.
+ */
+public class OpenRentalIndex {
+    // A rental that has been returned
+    public static final class ClosedRental {
+        private final Vehicle vehicle;
+        private final Customer customer;
+        private final int rentedDay;
+        private final int returnedDay;
+
+        ClosedRental(Vehicle vehicle, Customer customer, int rentedDay, int returnedDay) {
+            this.vehicle = vehicle;
+            this.customer = customer;
+            this.rentedDay = rentedDay;
+            this.returnedDay = returnedDay;
+        }
+
+        public Vehicle getVehicle() {
+            return vehicle;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public LocalDate getRentedDate() {
+            return LocalDate.ofEpochDay(rentedDay);
+        }
+
+        public LocalDate getReturnedDate() {
+            return LocalDate.ofEpochDay(returnedDay);
+        }
+
+        public int getDays() {
+            return returnedDay - rentedDay;
+        }
+    }
+
+    private final ConcurrentHashMap<Vehicle, RentalRecord> open = new ConcurrentHashMap<>();
+
+    // Closed intervals, one column per field; guarded by this
+    private final List<Vehicle> closedVehicles = new ArrayList<>();
+    private final List<Customer> closedCustomers = new ArrayList<>();
+    private final IntList rentedDays = new IntList();
+    private final IntList returnedDays = new IntList();
+    private final IntObjectMap<IntList> closedByPlate = new IntObjectMap<>();
+    private long totalDays;
+    // RENT rows seen by replay that haven't met their RETURN yet
+    private final Map<Vehicle, RentalRecord> replayPending = new IdentityHashMap<>();
+
+    public RentalRecord get(Vehicle vehicle) {
+        return open.get(vehicle);
+    }
+
+    // The customer who has the vehicle now, or null if it isn't rented
+    public Customer renter(Vehicle vehicle) {
+        RentalRecord record = open.get(vehicle);
+        return record == null ? null : record.getCustomer();
+    }
+
+    public int openCount() {
+        return open.size();
+    }
+
+    public Collection<RentalRecord> openRecords() {
+        return open.values();
+    }
+
+    public void open(RentalRecord rent) {
+        open.put(rent.getVehicle(), rent);
+    }
+
+    // Ends the vehicle's rental and returns its RENT record, or null if it wasn't open
+    public RentalRecord close(RentalRecord returned) {
+        RentalRecord rent = open.remove(returned.getVehicle());
+        if (rent != null) {
+            addClosed(rent.getVehicle(), rent.getCustomer(),
+                      (int) rent.getRecordDate().toEpochDay(), (int) returned.getRecordDate().toEpochDay());
+        }
+        return rent;
+    }
+
+    public void restoreOpen(RentalRecord rent) {
+        open.put(rent.getVehicle(), rent);
+    }
+
+    public void restoreReturned(Vehicle vehicle) {
+        open.remove(vehicle);
+    }
+
+    // Feeds one logged record, in log order, into the closed-interval table only
+    public synchronized void replay(Vehicle vehicle, Customer customer, int epochDay, String recordType) {
+        if ("RENT".equals(recordType)) {
+            replayPending.put(vehicle, new RentalRecord(vehicle, customer, LocalDate.ofEpochDay(epochDay), 0, recordType));
+        } else if ("RETURN".equals(recordType)) {
+            RentalRecord rent = replayPending.remove(vehicle);
+            if (rent != null) {
+                addClosed(vehicle, rent.getCustomer(), (int) rent.getRecordDate().toEpochDay(), epochDay);
+            }
+        }
+    }
+
+    // Rentals still pending at the end of the log are returned live, through close
+    public synchronized void finishReplay() {
+        replayPending.clear();
+    }
+
+    public synchronized List<ClosedRental> closedRentals(Vehicle vehicle) {
+        List<ClosedRental> result = new ArrayList<>();
+        IntList rows = closedByPlate.get(vehicle.getPlateKey());
+        for (int i = 0; rows != null && i < rows.size(); i++) {
+            result.add(closedAt(rows.get(i)));
+        }
+        return result;
+    }
+
+    public synchronized int closedCount() {
+        return rentedDays.size();
+    }
+
+    public synchronized double averageDays() {
+        return rentedDays.isEmpty() ? 0 : (double) totalDays / rentedDays.size();
+    }
+
+    private synchronized void addClosed(Vehicle vehicle, Customer customer, int rentedDay, int returnedDay) {
+        int row = rentedDays.size();
+        closedVehicles.add(vehicle);
+        closedCustomers.add(customer);
+        rentedDays.add(rentedDay);
+        returnedDays.add(returnedDay);
+        totalDays += returnedDay - rentedDay;
+        IntList rows = closedByPlate.get(vehicle.getPlateKey());
+        if (rows == null) {
+            rows = new IntList(2);
+            closedByPlate.put(vehicle.getPlateKey(), rows);
+        }
+        rows.add(row);
+    }
+
+    private ClosedRental closedAt(int row) {
+        return new ClosedRental(closedVehicles.get(row), closedCustomers.get(row),
+                                rentedDays.get(row), returnedDays.get(row));
+    }
+}
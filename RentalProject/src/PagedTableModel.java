@@ -0,0 +1,293 @@
+import javax.swing.JTable;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.JTableHeader;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Table model that never holds more than a few pages of rows. The source
+ * selects the matching rows for the current filter and sort on a background
+ * SwingWorker, and the pages the table asks to paint are fetched on further
+ * workers; cells show blank until their page arrives. Everything else runs
+ * on the event dispatch thread, so no state here needs locking.
+ *
+ * Clicking a sortable column header sorts by it, clicking again reverses.
+ */
+public class PagedTableModel<T> extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    public static final int PAGE_SIZE = 200;
+    private static final int CACHED_PAGES = 50;
+
+    // The rows matching one filter and sort, fetched a page at a time
+    public interface Rows<T> {
+        int size();
+
+        List<T> page(int from, int count);
+    }
+
+    // Called off the event dispatch thread
+    public interface Source<T> {
+        Rows<T> select(Selection<T> selection);
+    }
+
+    // What the table wants shown: filter text (never null) and sort column (-1 for natural order)
+    public static final class Selection<T> {
+        public final String filter;
+        public final int sortColumn;
+        public final boolean ascending;
+        private final Function<T, Object> sortValue;
+
+        Selection(String filter, int sortColumn, boolean ascending, Function<T, Object> sortValue) {
+            this.filter = filter;
+            this.sortColumn = sortColumn;
+            this.ascending = ascending;
+            this.sortValue = sortValue;
+        }
+
+        // Sorts rows by the value shown in the sort column, blank cells last; no-op in natural order
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public void sort(List<T> list) {
+            if (sortValue == null) return;
+            Comparator<Comparable> values = Comparator.nullsLast(Comparator.<Comparable>naturalOrder());
+            Comparator<T> order = (a, b) -> values.compare((Comparable) sortValue.apply(a),
+                                                           (Comparable) sortValue.apply(b));
+            list.sort(ascending ? order : order.reversed());
+        }
+    }
+
+    private final String[] names;
+    private final List<Function<T, Object>> columns;
+    private final Set<Integer> sortable = new HashSet<>();
+    private final Source<T> source;
+    private final Timer reloadTimer;
+
+    private Rows<T> rows = listRows(new ArrayList<>());
+    private int rowCount;
+    private final Map<Integer, List<T>> pages = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> pagesLoading = new HashSet<>();
+    // Bumped by every selection so pages fetched for an older one are thrown away
+    private int generation;
+    private boolean selecting;
+    private boolean selectAgain;
+    private String filter = "";
+    private int sortColumn = -1;
+    private boolean ascending = true;
+
+    private PagedTableModel(Source<T> source, List<String> names, List<Function<T, Object>> columns,
+                            Set<Integer> sortable) {
+        this.source = source;
+        this.names = names.toArray(new String[0]);
+        this.columns = columns;
+        this.sortable.addAll(sortable);
+        // Bursts of changes collapse into one reselect
+        this.reloadTimer = new Timer(250, e -> reload());
+        this.reloadTimer.setRepeats(false);
+    }
+
+    public static <T> Builder<T> builder(Source<T> source) {
+        return new Builder<>(source);
+    }
+
+    public static final class Builder<T> {
+        private final Source<T> source;
+        private final List<String> names = new ArrayList<>();
+        private final List<Function<T, Object>> columns = new ArrayList<>();
+        private final Set<Integer> sortable = new HashSet<>();
+
+        private Builder(Source<T> source) {
+            this.source = source;
+        }
+
+        public Builder<T> column(String name, Function<T, Object> value) {
+            names.add(name);
+            columns.add(value);
+            return this;
+        }
+
+        public Builder<T> sortableColumn(String name, Function<T, Object> value) {
+            sortable.add(columns.size());
+            return column(name, value);
+        }
+
+        public PagedTableModel<T> build() {
+            return new PagedTableModel<>(source, names, columns, sortable);
+        }
+    }
+
+    // Rows over a list the source has already selected and sorted
+    public static <T> Rows<T> listRows(List<T> list) {
+        return new Rows<T>() {
+            public int size() {
+                return list.size();
+            }
+
+            public List<T> page(int from, int count) {
+                return new ArrayList<>(list.subList(Math.min(from, list.size()), Math.min(from + count, list.size())));
+            }
+        };
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column != sortColumn) return names[column];
+        return names[column] + (ascending ? " \u25B2" : " \u25BC");
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        T item = getRow(row);
+        return item == null ? null : columns.get(column).apply(item);
+    }
+
+    // The row if its page is cached; otherwise starts fetching the page and returns null
+    public T getRow(int row) {
+        int page = row / PAGE_SIZE;
+        List<T> cached = pages.get(page);
+        if (cached == null) {
+            fetch(page);
+            return null;
+        }
+        int index = row % PAGE_SIZE;
+        return index < cached.size() ? cached.get(index) : null;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter == null ? "" : filter.trim();
+        reload();
+    }
+
+    public void sortBy(int column) {
+        if (!sortable.contains(column)) return;
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+        reload();
+    }
+
+    // Reselects after a short quiet period; for change notifications
+    public void reloadSoon() {
+        reloadTimer.restart();
+    }
+
+    // Reselects now on a background worker, keeping the old rows on screen until it finishes
+    public void reload() {
+        if (selecting) {
+            selectAgain = true;
+            return;
+        }
+        selecting = true;
+        Selection<T> selection = new Selection<>(filter, sortColumn, ascending,
+                                                 sortColumn < 0 ? null : columns.get(sortColumn));
+        new SwingWorker<Rows<T>, Void>() {
+            @Override
+            protected Rows<T> doInBackground() {
+                return source.select(selection);
+            }
+
+            @Override
+            protected void done() {
+                selecting = false;
+                try {
+                    rows = get();
+                    generation++;
+                    pages.clear();
+                    pagesLoading.clear();
+                    rowCount = rows.size();
+                    fireTableDataChanged();
+                } catch (InterruptedException | ExecutionException e) {
+                    System.out.println("Error loading table rows: " + e.getMessage());
+                }
+                if (selectAgain) {
+                    selectAgain = false;
+                    reload();
+                }
+            }
+        }.execute();
+    }
+
+    // Repaints the row showing this item, if it is on a cached page
+    public void refreshRow(T item) {
+        for (Map.Entry<Integer, List<T>> entry : pages.entrySet()) {
+            int index = entry.getValue().indexOf(item);
+            if (index >= 0) {
+                int row = entry.getKey() * PAGE_SIZE + index;
+                fireTableRowsUpdated(row, row);
+                return;
+            }
+        }
+    }
+
+    // A table over this model with header-click sorting
+    public JTable createTable() {
+        JTable table = new JTable(this);
+        table.setFillsViewportHeight(true);
+        JTableHeader header = table.getTableHeader();
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.convertColumnIndexToModel(header.columnAtPoint(e.getPoint()));
+                if (column < 0 || !sortable.contains(column)) return;
+                sortBy(column);
+                for (int i = 0; i < table.getColumnCount(); i++) {
+                    table.getColumnModel().getColumn(i).setHeaderValue(
+                        getColumnName(table.convertColumnIndexToModel(i)));
+                }
+                header.repaint();
+            }
+        });
+        return table;
+    }
+
+    private void fetch(int page) {
+        if (!pagesLoading.add(page)) return;
+        int fetchGeneration = generation;
+        Rows<T> fetchRows = rows;
+        new SwingWorker<List<T>, Void>() {
+            @Override
+            protected List<T> doInBackground() {
+                return fetchRows.page(page * PAGE_SIZE, PAGE_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                if (fetchGeneration != generation) return;
+                pagesLoading.remove(page);
+                try {
+                    pages.put(page, get());
+                } catch (InterruptedException | ExecutionException e) {
+                    pages.put(page, Collections.<T>emptyList());
+                    System.out.println("Error loading table page: " + e.getMessage());
+                }
+                int first = page * PAGE_SIZE;
+                int last = Math.min(rowCount, first + PAGE_SIZE) - 1;
+                if (last >= first) fireTableRowsUpdated(first, last);
+            }
+        }.execute();
+    }
+}
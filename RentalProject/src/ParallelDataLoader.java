@@ -0,0 +1,198 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads line-based data files by cutting them into chunks on line
+ * boundaries and parsing the chunks in parallel on a fork/join pool. Rows
+ * come back in file order.
+ *
+ * Each chunk is read into a heap buffer by the task that parses it rather
+ * than memory-mapped. A mapping lasts until the buffer is garbage collected,
+ * and on Windows a file can't be renamed while it is mapped, which would
+ * stall the first rotation of the rental log after startup.
+ */
+public class ParallelDataLoader {
+    public interface LineParser<T> {
+        // Returns null to drop the line
+        T parse(LineCursor cursor);
+    }
+
+    // Called from parsing threads as each chunk of a file finishes; a missing file reports 0 of 0
+    public interface ProgressListener {
+        void progress(String file, long bytesDone, long bytesTotal);
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private volatile ProgressListener progressListener;
+
+    public ParallelDataLoader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelDataLoader(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    /**
+     * Splits the file at line boundaries and starts parsing it in the
+     * background, each chunk read into a heap buffer by the task that parses it.
+     * Join the returned task to get the rows; a missing file yields no rows.
+     */
+    public <T> ForkJoinTask<List<T>> submit(File file, LineParser<T> parser) throws IOException {
+        long started = System.nanoTime();
+        List<Long> bounds = file.exists() ? split(file) : new ArrayList<>();
+        recordPhase("split " + file.getName(), System.nanoTime() - started);
+        Progress progress = null;
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            long total = bounds.isEmpty() ? 0 : bounds.get(bounds.size() - 1);
+            progress = new Progress(file.getName(), total, listener);
+            listener.progress(file.getName(), 0, total);
+        }
+        int chunkCount = Math.max(0, bounds.size() - 1);
+        return pool.submit(new ParseTask<>(file, bounds, 0, chunkCount, parser, progress));
+    }
+
+    public synchronized void recordPhase(String phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    public synchronized String timingReport() {
+        StringBuilder report = new StringBuilder("Startup timing:");
+        for (Map.Entry<String, Long> e : phaseNanos.entrySet()) {
+            report.append(String.format(" %s %.1f ms;", e.getKey(), e.getValue() / 1e6));
+        }
+        return report.toString();
+    }
+
+    // Chunk i covers bytes bounds[i] until bounds[i + 1]
+    private List<Long> split(File file) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            bounds.add(start);
+            while (start < size) {
+                long end = Math.min(start + chunkSize, size);
+                if (end < size) {
+                    end = nextLineStart(channel, end, size);
+                }
+                bounds.add(end);
+                start = end;
+            }
+        }
+        return bounds;
+    }
+
+    private static ByteBuffer read(File file, long start, long end) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, start + chunk.position()) < 0) break;
+            }
+        }
+        chunk.flip();
+        return chunk;
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = from;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static final class Progress {
+        private final String file;
+        private final long total;
+        private final ProgressListener listener;
+        private final AtomicLong done = new AtomicLong();
+
+        Progress(String file, long total, ProgressListener listener) {
+            this.file = file;
+            this.total = total;
+            this.listener = listener;
+        }
+
+        void advance(long bytes) {
+            listener.progress(file, done.addAndGet(bytes), total);
+        }
+    }
+
+    private static final class ParseTask<T> extends RecursiveTask<List<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final List<Long> bounds;
+        private final int from;
+        private final int to;
+        private final LineParser<T> parser;
+        private final Progress progress;
+
+        ParseTask(File file, List<Long> bounds, int from, int to, LineParser<T> parser, Progress progress) {
+            this.file = file;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.parser = parser;
+            this.progress = progress;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (to - from <= 1) {
+                List<T> rows = new ArrayList<>();
+                if (from < to) {
+                    ByteBuffer chunk;
+                    try {
+                        chunk = read(file, bounds.get(from), bounds.get(from + 1));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    LineCursor cursor = new LineCursor(chunk);
+                    while (cursor.nextLine()) {
+                        T row = parser.parse(cursor);
+                        if (row != null) rows.add(row);
+                    }
+                    if (progress != null) progress.advance(chunk.limit());
+                }
+                return rows;
+            }
+            int middle = (from + to) >>> 1;
+            ParseTask<T> left = new ParseTask<>(file, bounds, from, middle, parser, progress);
+            ParseTask<T> right = new ParseTask<>(file, bounds, middle, to, parser, progress);
+            left.fork();
+            List<T> tail = right.compute();
+            List<T> rows = left.join();
+            rows.addAll(tail);
+            return rows;
+        }
+    }
+}
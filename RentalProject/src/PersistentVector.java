@@ -0,0 +1,165 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list where adding or replacing an element returns a new vector
+ * and leaves this one untouched. Elements sit in a tree of 32-slot arrays
+ * plus a tail array for the newest ones; an update copies only the arrays on
+ * the path to the changed slot and shares everything else with the old
+ * vector, so it costs O(log32 n) and a few small allocations however large
+ * the list is. Reads need no locking because nothing reachable ever changes.
+ */
+public final class PersistentVector<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY =
+        new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    // Bits to shift an index by to pick its slot in the root
+    private final int shift;
+    // Inner nodes hold Object[] children, leaves hold elements
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    public static <T> PersistentVector<T> of(List<? extends T> elements) {
+        PersistentVector<T> vector = empty();
+        for (T element : elements) {
+            vector = vector.add(element);
+        }
+        return vector;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) leafFor(index)[index & MASK];
+    }
+
+    // A vector with the element appended
+    public PersistentVector<T> add(T element) {
+        if (tail.length < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // The tail is full: push it into the tree and start a new one
+        Object[] newRoot;
+        int newShift = shift;
+        if ((tailOffset() >>> BITS) >= (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] {element});
+    }
+
+    // A vector with the element at index replaced
+    public PersistentVector<T> set(int index, T element) {
+        checkIndex(index);
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, setInTree(shift, root, index, element), tail);
+    }
+
+    // Read-only List view of this version
+    public List<T> asList() {
+        return new View();
+    }
+
+    private final class View extends AbstractList<T> implements RandomAccess {
+        @Override
+        public T get(int index) {
+            return PersistentVector.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private int tailOffset() {
+        return size - tail.length;
+    }
+
+    private Object[] leafFor(int index) {
+        checkIndex(index);
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    // Copies the path to where the full tail goes and hangs the tail there
+    private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+        Object[] copy = parent.clone();
+        int slot = ((size - 1) >>> level) & MASK;
+        if (level == BITS) {
+            copy[slot] = leaf;
+        } else {
+            Object[] child = (Object[]) parent[slot];
+            copy[slot] = child == null ? newPath(level - BITS, leaf) : pushTail(level - BITS, child, leaf);
+        }
+        return copy;
+    }
+
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0) {
+            return leaf;
+        }
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+
+    private static Object[] setInTree(int level, Object[] node, int index, Object element) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            int slot = (index >>> level) & MASK;
+            copy[slot] = setInTree(level - BITS, (Object[]) node[slot], index, element);
+        }
+        return copy;
+    }
+}
@@ -23,14 +23,22 @@ public class PickupTruck extends Vehicle implements Rentable {
     }
 
     @Override
-    public void rentVehicle() {
-        setStatus(VehicleStatus.Rented);
+    public boolean rentVehicle() {
+        if (!tryTransition(VehicleStatus.Available, VehicleStatus.Rented)) {
+            System.out.println("Pickup Truck " + getLicensePlate() + " is not available.");
+            return false;
+        }
         System.out.println("Pickup Truck " + getLicensePlate() + " has been rented.");
+        return true;
     }
 
     @Override
-    public void returnVehicle() {
-        setStatus(VehicleStatus.Available);
+    public boolean returnVehicle() {
+        if (!tryTransition(VehicleStatus.Rented, VehicleStatus.Available)) {
+            System.out.println("Pickup Truck " + getLicensePlate() + " is not rented.");
+            return false;
+        }
         System.out.println("Pickup Truck " + getLicensePlate() + " has been returned.");
+        return true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+/**
+ * Packs a license plate of the form AAA999 into a single int.
+ * Letters are base 26 and the digits are appended as a base 1000 suffix,
+ * so every valid plate maps to a key in [0, 26^3 * 1000).
+ * Lookups are case-insensitive and never allocate.
+ */
+public final class PlateCodec {
+    public static final int INVALID = -1;
+    public static final int KEY_SPACE = 26 * 26 * 26 * 1000;
+
+    private PlateCodec() {
+    }
+
+    public static int encode(String plate) {
+        if (plate == null || plate.length() != 6) {
+            return INVALID;
+        }
+        int key = 0;
+        for (int i = 0; i < 3; i++) {
+            int letter = letterValue(plate.charAt(i));
+            if (letter < 0) return INVALID;
+            key = key * 26 + letter;
+        }
+        for (int i = 3; i < 6; i++) {
+            char c = plate.charAt(i);
+            if (c < '0' || c > '9') return INVALID;
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    public static boolean isValid(String plate) {
+        return encode(plate) != INVALID;
+    }
+
+    public static String decode(int key) {
+        if (key < 0 || key >= KEY_SPACE) {
+            throw new IllegalArgumentException("Invalid plate key: " + key);
+        }
+        char[] chars = new char[6];
+        int digits = key % 1000;
+        int letters = key / 1000;
+        for (int i = 5; i >= 3; i--) {
+            chars[i] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+        for (int i = 2; i >= 0; i--) {
+            chars[i] = (char) ('A' + letters % 26);
+            letters /= 26;
+        }
+        return new String(chars);
+    }
+
+    private static int letterValue(char c) {
+        if (c >= 'A' && c <= 'Z') return c - 'A';
+        if (c >= 'a' && c <= 'z') return c - 'a';
+        return -1;
+    }
+}
@@ -0,0 +1,52 @@
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects lines that could not be loaded, with the reason, so one bad
+ * line never stops the rest of a file from loading. Lines are appended to
+ * the quarantine file as "source,reason,original line" for manual repair.
+ * Lines that stay unfixable show up again on every load, so the file is reset
+ * at the start of each one.
+ */
+public class Quarantine {
+    private final String path;
+    private final GroupCommitWriter writer;
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    public Quarantine(String path, GroupCommitWriter writer) {
+        this.path = path;
+        this.writer = writer;
+    }
+
+    // The file describes the most recent load only
+    public void reset() {
+        new File(path).delete();
+    }
+
+    public void add(String source, String line, String reason) {
+        counts.computeIfAbsent(source, s -> new AtomicInteger()).incrementAndGet();
+        writer.append(path, source + "," + reason.replace(',', ';') + "," + line);
+    }
+
+    public int count(String source) {
+        AtomicInteger count = counts.get(source);
+        return count == null ? 0 : count.get();
+    }
+
+    public int total() {
+        int total = 0;
+        for (AtomicInteger count : counts.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    public void report() {
+        for (Map.Entry<String, AtomicInteger> e : new TreeMap<>(counts).entrySet()) {
+            System.out.println("Quarantined " + e.getValue() + " lines from " + e.getKey() + " (see " + path + ").");
+        }
+    }
+}
@@ -1,4 +1,5 @@
 public interface Rentable {
-    void rentVehicle();
-    void returnVehicle();
+    // Both return false if the vehicle was not in the required status
+    boolean rentVehicle();
+    boolean returnVehicle();
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+/**
+ * A change published on RentalSystem's event bus. Sequence numbers are
+ * bus-wide and increase in publish order, and every subscription receives
+ * its events in that order, so a consumer that merges several subscriptions
+ * can still put the deltas back in order.
+ */
+public abstract class RentalEvent {
+    private final long sequence;
+
+    RentalEvent(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public static final class VehicleAdded extends RentalEvent {
+        private final Vehicle vehicle;
+
+        VehicleAdded(long sequence, Vehicle vehicle) {
+            super(sequence);
+            this.vehicle = vehicle;
+        }
+
+        public Vehicle getVehicle() {
+            return vehicle;
+        }
+    }
+
+    public static final class StatusChanged extends RentalEvent {
+        private final Vehicle vehicle;
+        private final Vehicle.VehicleStatus from;
+        private final Vehicle.VehicleStatus to;
+
+        StatusChanged(long sequence, Vehicle vehicle, Vehicle.VehicleStatus from, Vehicle.VehicleStatus to) {
+            super(sequence);
+            this.vehicle = vehicle;
+            this.from = from;
+            this.to = to;
+        }
+
+        public Vehicle getVehicle() {
+            return vehicle;
+        }
+
+        public Vehicle.VehicleStatus getFrom() {
+            return from;
+        }
+
+        public Vehicle.VehicleStatus getTo() {
+            return to;
+        }
+    }
+
+    public static final class CustomerAdded extends RentalEvent {
+        private final Customer customer;
+
+        CustomerAdded(long sequence, Customer customer) {
+            super(sequence);
+            this.customer = customer;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+    }
+
+    public static final class RecordAppended extends RentalEvent {
+        private final RentalRecord record;
+
+        RecordAppended(long sequence, RentalRecord record) {
+            super(sequence);
+            this.record = record;
+        }
+
+        public RentalRecord getRecord() {
+            return record;
+        }
+    }
+}
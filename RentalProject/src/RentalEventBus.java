@@ -0,0 +1,131 @@
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Delivers RentalEvents to subscribers. Each subscription has its own
+ * bounded queue and delivery thread, and publishing only offers to those
+ * queues, so a slow or stuck subscriber never holds up a rent or return.
+ *
+ * When a subscriber falls so far behind that its queue is full, new events
+ * for it are dropped and counted. Once it has caught up with what is queued
+ * its overflow handler runs, and the subscriber should reload whatever it
+ * builds from the events instead of trusting its deltas.
+ */
+public class RentalEventBus {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+    // Numbering and enqueueing happen together under this lock, so every queue is in sequence order
+    private final Object publishLock = new Object();
+    private long sequence;  // guarded by publishLock
+
+    public final class Subscription<E extends RentalEvent> {
+        private final Class<E> type;
+        private final Consumer<? super E> handler;
+        private final Runnable onOverflow;
+        private final BlockingQueue<RentalEvent> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread thread;
+        private volatile boolean closed;
+
+        Subscription(Class<E> type, int capacity, Consumer<? super E> handler, Runnable onOverflow) {
+            this.type = type;
+            this.handler = handler;
+            this.onOverflow = onOverflow;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this::deliver, "rental-events-" + type.getSimpleName());
+            this.thread.setDaemon(true);
+        }
+
+        // Events dropped because the queue was full
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            thread.interrupt();
+        }
+
+        void offer(RentalEvent event) {
+            if (type.isInstance(event) && !queue.offer(event)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        private void deliver() {
+            long reported = 0;
+            while (!closed) {
+                try {
+                    RentalEvent event = queue.take();
+                    handler.accept(type.cast(event));
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    System.out.println("Error in event subscriber: " + e.getMessage());
+                }
+                long lost = dropped.get();
+                if (lost != reported && queue.isEmpty() && onOverflow != null) {
+                    reported = lost;
+                    onOverflow.run();
+                }
+            }
+        }
+    }
+
+    public <E extends RentalEvent> Subscription<E> subscribe(Class<E> type, Consumer<? super E> handler) {
+        return subscribe(type, DEFAULT_CAPACITY, handler, null);
+    }
+
+    /**
+     * Subscribes to events of the given type (RentalEvent.class for all).
+     * The handler and onOverflow run on the subscription's own thread.
+     */
+    public <E extends RentalEvent> Subscription<E> subscribe(Class<E> type, int capacity,
+                                                             Consumer<? super E> handler, Runnable onOverflow) {
+        Subscription<E> subscription = new Subscription<>(type, capacity, handler, onOverflow);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    void vehicleAdded(Vehicle vehicle) {
+        if (subscriptions.isEmpty()) return;
+        synchronized (publishLock) {
+            publish(new RentalEvent.VehicleAdded(++sequence, vehicle));
+        }
+    }
+
+    void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus from, Vehicle.VehicleStatus to) {
+        if (subscriptions.isEmpty()) return;
+        synchronized (publishLock) {
+            publish(new RentalEvent.StatusChanged(++sequence, vehicle, from, to));
+        }
+    }
+
+    void customerAdded(Customer customer) {
+        if (subscriptions.isEmpty()) return;
+        synchronized (publishLock) {
+            publish(new RentalEvent.CustomerAdded(++sequence, customer));
+        }
+    }
+
+    void recordAppended(RentalRecord record) {
+        if (subscriptions.isEmpty()) return;
+        synchronized (publishLock) {
+            publish(new RentalEvent.RecordAppended(++sequence, record));
+        }
+    }
+
+    // Caller holds publishLock; offers never block, so the lock is only held briefly
+    private void publish(RentalEvent event) {
+        for (Subscription<?> subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+}
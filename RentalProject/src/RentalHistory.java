@@ -1,34 +1,451 @@
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+/**
+ * Every rental record, in the order it was added. Records are only ever
+ * appended: each one is written to its slot first and then counted in the
+ * volatile published length, and the slot array is replaced by a grown copy
+ * rather than resized. A reader that knows a length no larger than
+ * published can read that prefix without the monitor, which is how
+ * FleetSnapshot reports history while rentals carry on. The postings and
+ * loading state are guarded by the monitor; records on disk are read after
+ * releasing it.
+ */
 public class RentalHistory {
-    private List<RentalRecord> rentalRecords = new ArrayList<>();
+    // Exactly one of these holds the records; rentalRecords has published slots in use
+    private volatile RentalRecord[] rentalRecords;
+    private CompactHistoryStore compactRecords;
+    // Records readable without the monitor
+    private volatile int published;
+    // Ordinals into rentalRecords, keyed by PlateCodec key
+    private IntObjectMap<IntList> recordsByPlate = new IntObjectMap<>();
+    // Ordinals into rentalRecords, keyed by customer ID
+    private Map<String, CustomerPostings> recordsByCustomer = new HashMap<>();
+    // Ordinals into rentalRecords, bucketed by epoch day of the record date
+    private NavigableMap<Integer, IntList> recordsByDay = new TreeMap<>();
+    private int lastDay;
+    private IntList lastDayPostings;
+    // Records left on disk; replaced whole so queries can read it after releasing the monitor
+    private volatile Disk disk = new Disk(null, new ArrayList<>(), null, null, null, Integer.MIN_VALUE, 0);
+    // While loading, queries wait and new records queue behind the loaded ones
+    private volatile boolean loading;
+    private Runnable loadOnFirstUse;
+    private List<RentalRecord> addedWhileLoading;
+    // Records from addLoadedRecord; those from addRecord follow them in memory. Fixed once loaded
+    private volatile int loadedRecords;
 
-    public void addRecord(RentalRecord record) {
-        rentalRecords.add(record);
+    /**
+     * Older records archived in cold segments, plus hot-file records dated
+     * before pagedBeforeDay that were left on disk to keep a recent window in
+     * memory. Both are read on demand and never cached here. Nothing in it
+     * changes, so a query captures it under the monitor and does the slow
+     * reads after letting go, leaving addRecord free to run.
+     */
+    private static final class Disk {
+        final SegmentedRentalLog archive;
+        final List<SegmentedRentalLog.Segment> segments;
+        final ParallelDataLoader.LineParser<RentalRecord> parser;
+        // IDs of the customers whose name contains a lowercase needle, or null to scan every block
+        final Function<String, Collection<String>> customerIdsByName;
+        final ByteBuffer paged;
+        final int pagedBeforeDay;
+        final int pagedCount;
+
+        Disk(SegmentedRentalLog archive, List<SegmentedRentalLog.Segment> segments,
+             ParallelDataLoader.LineParser<RentalRecord> parser,
+             Function<String, Collection<String>> customerIdsByName,
+             ByteBuffer paged, int pagedBeforeDay, int pagedCount) {
+            this.archive = archive;
+            this.segments = segments;
+            this.parser = parser;
+            this.customerIdsByName = customerIdsByName;
+            this.paged = paged;
+            this.pagedBeforeDay = pagedBeforeDay;
+            this.pagedCount = pagedCount;
+        }
+
+        Disk withPaged(ByteBuffer region, int beforeDay, int count) {
+            return new Disk(archive, segments, parser, customerIdsByName, region, beforeDay, count);
+        }
+
+        int count() {
+            return pagedCount + SegmentedRentalLog.countRecords(segments);
+        }
+
+        // Records in the range, archived ones first, in log order
+        List<RentalRecord> read(int fromDay, int toDay, ParallelDataLoader.LineParser<RentalRecord> lineParser) {
+            List<RentalRecord> result = new ArrayList<>();
+            if (archive != null) {
+                result.addAll(archive.read(segments, fromDay, toDay, lineParser));
+            }
+            result.addAll(readPaged(fromDay, toDay, lineParser));
+            return result;
+        }
+
+        List<RentalRecord> readPlate(int plateKey, ParallelDataLoader.LineParser<RentalRecord> lineParser) {
+            List<RentalRecord> result = new ArrayList<>();
+            if (archive != null) {
+                result.addAll(archive.readPlate(segments, plateKey, lineParser));
+            }
+            result.addAll(readPaged(Integer.MIN_VALUE, Integer.MAX_VALUE, lineParser));
+            return result;
+        }
+
+        List<RentalRecord> readCustomers(Collection<String> customerIds,
+                                         ParallelDataLoader.LineParser<RentalRecord> lineParser) {
+            List<RentalRecord> result = new ArrayList<>();
+            if (archive != null) {
+                result.addAll(customerIds == null
+                              ? archive.read(segments, Integer.MIN_VALUE, Integer.MAX_VALUE, lineParser)
+                              : archive.readCustomers(segments, customerIds, lineParser));
+            }
+            result.addAll(readPaged(Integer.MIN_VALUE, Integer.MAX_VALUE, lineParser));
+            return result;
+        }
+
+        private List<RentalRecord> readPaged(int fromDay, int toDay,
+                                             ParallelDataLoader.LineParser<RentalRecord> lineParser) {
+            if (paged == null || fromDay >= pagedBeforeDay) return new ArrayList<>();
+            return SegmentedRentalLog.read(paged, fromDay, Math.min(toDay, pagedBeforeDay - 1), lineParser);
+        }
+    }
+
+    private static final class CustomerPostings {
+        final Customer customer;
+        final IntList ordinals = new IntList();
+
+        CustomerPostings(Customer customer) {
+            this.customer = customer;
+        }
+    }
+
+    public RentalHistory() {
+        rentalRecords = new RentalRecord[16];
     }
 
+    // Keeps records in primitive columns; reads return flyweight views
+    public RentalHistory(CompactHistoryStore store) {
+        compactRecords = store;
+    }
+
+    /**
+     * Makes the archived segments part of this history. The parser links a
+     * rental_records.txt line to its vehicle and customer, or returns null.
+     * Segments archived later are still in memory and are not added again.
+     */
+    public void attachArchive(SegmentedRentalLog archive, ParallelDataLoader.LineParser<RentalRecord> parser) {
+        attachArchive(archive, parser, null);
+    }
+
+    /**
+     * As above, with a lookup from a lowercase name fragment to the IDs of
+     * the customers whose name contains it, so searches by name only read
+     * the blocks that may hold those customers.
+     */
+    public void attachArchive(SegmentedRentalLog archive, ParallelDataLoader.LineParser<RentalRecord> parser,
+                              Function<String, Collection<String>> customerIdsByName) {
+        List<SegmentedRentalLog.Segment> segments = archive.segments();
+        synchronized (this) {
+            disk = new Disk(archive, segments, parser, customerIdsByName,
+                            disk.paged, disk.pagedBeforeDay, disk.pagedCount);
+        }
+    }
+
+    /**
+     * Marks the history as being filled by a loader thread, which adds the
+     * stored records with addLoadedRecord and then calls finishLoading.
+     * If a loader is given it is only started by the first query.
+     */
+    public synchronized void beginLoading(Runnable loader) {
+        loading = true;
+        loadOnFirstUse = loader;
+        addedWhileLoading = new ArrayList<>();
+    }
+
+    public synchronized void finishLoading() {
+        loading = false;
+        for (RentalRecord record : addedWhileLoading) {
+            append(record);
+        }
+        addedWhileLoading = null;
+        notifyAll();
+    }
+
+    public boolean isLoaded() {
+        return !loading;
+    }
+
+    synchronized void addLoadedRecord(RentalRecord record) {
+        loadedRecords++;
+        append(record);
+    }
+
+    /**
+     * Leaves the hot-file records dated before beforeDay on disk. The lines
+     * are paged in from the region by queries that reach back that far.
+     */
+    public synchronized void pageFromDisk(ByteBuffer region, int beforeDay, int count) {
+        disk = disk.withPaged(region, beforeDay, count);
+    }
+
+    public synchronized void addRecord(RentalRecord record) {
+        if (loading) {
+            addedWhileLoading.add(record);
+        } else {
+            append(record);
+        }
+    }
+
+    private void append(RentalRecord record) {
+        int ordinal;
+        if (compactRecords != null) {
+            ordinal = compactRecords.add(record);
+        } else {
+            ordinal = published;
+            RentalRecord[] slots = rentalRecords;
+            if (ordinal == slots.length) {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+            slots[ordinal] = record;
+            rentalRecords = slots;
+        }
+        int plateKey = record.getVehicle().getPlateKey();
+        if (plateKey != PlateCodec.INVALID) {
+            IntList postings = recordsByPlate.get(plateKey);
+            if (postings == null) {
+                postings = new IntList();
+                recordsByPlate.put(plateKey, postings);
+            }
+            postings.add(ordinal);
+        }
+        Customer customer = record.getCustomer();
+        CustomerPostings postings = recordsByCustomer.get(customer.getCustomerId());
+        if (postings == null) {
+            postings = new CustomerPostings(customer);
+            recordsByCustomer.put(customer.getCustomerId(), postings);
+        }
+        postings.ordinals.add(ordinal);
+        // Records mostly arrive in date order, so the previous day's bucket usually matches
+        int day = (int) record.getRecordDate().toEpochDay();
+        if (day != lastDay || lastDayPostings == null) {
+            lastDayPostings = recordsByDay.get(day);
+            if (lastDayPostings == null) {
+                lastDayPostings = new IntList();
+                recordsByDay.put(day, lastDayPostings);
+            }
+            lastDay = day;
+        }
+        lastDayPostings.add(ordinal);
+        published = ordinal + 1;
+    }
+
+    // Returns a point-in-time copy so callers can iterate while records are appended
     public List<RentalRecord> getRentalHistory() {
-        return rentalRecords;
+        return getRentalHistory(Integer.MAX_VALUE);
     }
 
+    // The stored records plus only the first addedCount passed to addRecord, for FleetSnapshot
+    // Takes the monitor only to wait out the initial load, so a long report never holds up addRecord
+    public List<RentalRecord> getRentalHistory(int addedCount) {
+        if (loading) {
+            synchronized (this) {
+                awaitLoaded();
+            }
+        }
+        Disk onDisk = disk;
+        int end = (int) Math.min((long) loadedRecords + addedCount, published);
+        List<RentalRecord> result = onDisk.read(Integer.MIN_VALUE, Integer.MAX_VALUE, onDisk.parser);
+        for (int i = 0; i < end; i++) {
+            result.add(record(i));
+        }
+        return result;
+    }
+
+    // Records held in memory; archived and paged-out ones are not counted
+    public synchronized int loadedCount() {
+        awaitLoaded();
+        return published;
+    }
+
+    // A page of the records held in memory, oldest first, for views that show a window at a time
+    public synchronized List<RentalRecord> getLoadedRecords(int from, int count) {
+        awaitLoaded();
+        int end = Math.min(from + count, loadedCount());
+        List<RentalRecord> result = new ArrayList<>(Math.max(0, end - from));
+        for (int i = from; i < end; i++) {
+            result.add(record(i));
+        }
+        return result;
+    }
+
+    // Archived records are counted from the segment indexes without opening them
+    public synchronized int size() {
+        awaitLoaded();
+        return published + disk.count();
+    }
+
+    public List<RentalRecord> getRentalRecordsByCustomerId(String customerId) {
+        if (customerId == null) return new ArrayList<>();
+        Disk onDisk;
+        List<RentalRecord> inMemory;
+        synchronized (this) {
+            awaitLoaded();
+            onDisk = disk;
+            CustomerPostings postings = recordsByCustomer.get(customerId);
+            inMemory = postings == null ? new ArrayList<>() : resolve(postings.ordinals.toArray());
+        }
+        List<RentalRecord> result = onDisk.readCustomers(Arrays.asList(customerId), cursor -> {
+            cursor.nextString();
+            cursor.nextString();
+            boolean match = customerId.equals(cursor.nextString());
+            cursor.rewind();
+            return match ? onDisk.parser.parse(cursor) : null;
+        });
+        result.addAll(inMemory);
+        return result;
+    }
+
+    // Case-insensitive substring match on the customer name, checked once per customer rather than per record
     public List<RentalRecord> getRentalRecordsByCustomer(String customerName) {
-        List<RentalRecord> result = new ArrayList<>();
-        for (RentalRecord record : rentalRecords) {
-            if (record.getCustomer().toString().toLowerCase().contains(customerName.toLowerCase())) {
-                result.add(record);
+        String needle = customerName.toLowerCase(Locale.ROOT);
+        Disk onDisk;
+        List<RentalRecord> inMemory;
+        synchronized (this) {
+            awaitLoaded();
+            onDisk = disk;
+            IntList matches = new IntList();
+            for (CustomerPostings postings : recordsByCustomer.values()) {
+                String name = postings.customer.getCustomerName();
+                if (name != null && name.toLowerCase(Locale.ROOT).contains(needle)) {
+                    for (int i = 0; i < postings.ordinals.size(); i++) {
+                        matches.add(postings.ordinals.get(i));
+                    }
+                }
             }
+            int[] ordinals = matches.toArray();
+            Arrays.sort(ordinals);  // keep history order across customers
+            inMemory = resolve(ordinals);
         }
+        Collection<String> customerIds = onDisk.customerIdsByName == null
+                                         ? null : onDisk.customerIdsByName.apply(needle);
+        List<RentalRecord> result = onDisk.readCustomers(customerIds, cursor -> {
+            RentalRecord record = onDisk.parser.parse(cursor);
+            String name = record == null ? null : record.getCustomer().getCustomerName();
+            return name != null && name.toLowerCase(Locale.ROOT).contains(needle) ? record : null;
+        });
+        result.addAll(inMemory);
         return result;
     }
 
     public List<RentalRecord> getRentalRecordsByVehicle(String licensePlate) {
-        List<RentalRecord> result = new ArrayList<>();
-        for (RentalRecord record : rentalRecords) {
-            if (record.getVehicle().getLicensePlate().equalsIgnoreCase(licensePlate)) {
-                result.add(record);
+        int plateKey = PlateCodec.encode(licensePlate);
+        if (plateKey == PlateCodec.INVALID) return new ArrayList<>();
+        Disk onDisk;
+        List<RentalRecord> inMemory;
+        synchronized (this) {
+            awaitLoaded();
+            onDisk = disk;
+            IntList postings = recordsByPlate.get(plateKey);
+            inMemory = postings == null ? new ArrayList<>() : resolve(postings.toArray());
+        }
+        List<RentalRecord> result = onDisk.readPlate(plateKey, cursor -> {
+            cursor.nextString();
+            boolean match = cursor.nextPlateKey() == plateKey;
+            cursor.rewind();
+            return match ? onDisk.parser.parse(cursor) : null;
+        });
+        result.addAll(inMemory);
+        return result;
+    }
+
+    /**
+     * Streams records dated from..to (inclusive) in date order. In-memory
+     * days are materialised one at a time as the stream is consumed, so
+     * callers that stop early never touch the rest of the range. Archived
+     * records in the range are read up front, outside the monitor, skipping
+     * segments and blocks whose index says they hold nothing from it.
+     */
+    public Stream<RentalRecord> getRecordsBetween(LocalDate from, LocalDate to) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        Map<Integer, List<RentalRecord>> cold = new HashMap<>();
+        TreeSet<Integer> days = new TreeSet<>();
+        Disk onDisk;
+        synchronized (this) {
+            awaitLoaded();
+            onDisk = disk;
+            days.addAll(recordsByDay.subMap(fromDay, true, toDay, true).keySet());
+        }
+        for (RentalRecord record : onDisk.read(fromDay, toDay, onDisk.parser)) {
+            int day = (int) record.getRecordDate().toEpochDay();
+            cold.computeIfAbsent(day, d -> new ArrayList<>()).add(record);
+            days.add(day);
+        }
+        return days.stream().flatMap(day -> {
+            List<RentalRecord> records = cold.getOrDefault(day, new ArrayList<>());
+            records.addAll(recordsOnDay(day));
+            return records.stream();
+        });
+    }
+
+    public List<RentalRecord> getRecordsOn(LocalDate date) {
+        int day = (int) date.toEpochDay();
+        Disk onDisk;
+        synchronized (this) {
+            awaitLoaded();
+            onDisk = disk;
+        }
+        List<RentalRecord> result = onDisk.read(day, day, onDisk.parser);
+        result.addAll(recordsOnDay(day));
+        return result;
+    }
+
+    private synchronized List<RentalRecord> recordsOnDay(int day) {
+        IntList postings = recordsByDay.get(day);
+        return postings == null ? new ArrayList<>() : resolve(postings.toArray());
+    }
+
+    // Caller holds the monitor
+    private void awaitLoaded() {
+        if (loadOnFirstUse != null) {
+            Thread loader = new Thread(loadOnFirstUse, "rental-history-loader");
+            loader.setDaemon(true);
+            loadOnFirstUse = null;
+            loader.start();
+        }
+        boolean interrupted = false;
+        while (loading) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
         }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private List<RentalRecord> resolve(int[] ordinals) {
+        List<RentalRecord> result = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            result.add(record(ordinal));
+        }
         return result;
     }
-}
\ No newline at end of file
+
+    // Any ordinal below published; needs no monitor
+    private RentalRecord record(int ordinal) {
+        return compactRecords != null ? compactRecords.get(ordinal) : rentalRecords[ordinal];
+    }
+}
@@ -15,6 +15,10 @@ public class RentalRecord {
         this.recordType = recordType;
     }
 
+    // For flyweight subclasses that read their fields from elsewhere
+    RentalRecord() {
+    }
+
     public Customer getCustomer(){
     	return customer;
     }
@@ -37,9 +41,9 @@ public class RentalRecord {
     
     @Override
     public String toString() {
-        return recordType + " | Plate: " + vehicle.getLicensePlate() + 
-               " | Customer: " + customer.getCustomerName() + 
-               " | Date: " + recordDate + 
-               " | Amount: $" + totalAmount;
+        return getRecordType() + " | Plate: " + getVehicle().getLicensePlate() + 
+               " | Customer: " + getCustomer().getCustomerName() + 
+               " | Date: " + getRecordDate() + 
+               " | Amount: $" + getTotalAmount();
     }
 }
\ No newline at end of file
@@ -1,76 +1,285 @@
 import java.util.List;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.io.*;
-import java.time.format.DateTimeParseException;
 
 public class RentalSystem {
-    private List<Vehicle> vehicles = new ArrayList<>();
-    private List<Customer> customers = new ArrayList<>();
-    private RentalHistory rentalHistory = new RentalHistory();
+    // Guarded by catalogLock
+    private final List<Vehicle> vehicles = new ArrayList<>();
+    private final List<Customer> customers = new ArrayList<>();
+    // Primary-key indexes kept in step with the lists above
+    private final IntObjectMap<Vehicle> vehiclesByPlate = new IntObjectMap<>();
+    private final ConcurrentHashMap<String, Customer> customersById = new ConcurrentHashMap<>();
+    private final ReadWriteLock catalogLock = new ReentrantReadWriteLock();
+    // Vehicles by status, kept current by the status listener and restoreStatus
+    private final FleetIndex fleetIndex = new FleetIndex();
+    private final VehicleSearchIndex vehicleSearch = new VehicleSearchIndex();
+    private final CustomerDirectory customerDirectory = new CustomerDirectory();
+
+    private final RentalHistory rentalHistory = createHistory(System.getProperty("rental.history", "compact"));
+    // Rented plates at day boundaries, so as-of queries replay only the records since one
+    private final StatusTimeline statusTimeline =
+        new StatusTimeline(rentalHistory, Integer.getInteger("rental.statusCheckpointRecords", 4096));
+    // Latest published version of the lists above and their statuses; readers take it without locking
+    private final AtomicReference<FleetSnapshot> snapshot =
+        new AtomicReference<>(FleetSnapshot.empty(rentalHistory));
+    // "background" (default), "lazy" or "eager"; see loadTextFiles
+    private final String historyLoadMode = System.getProperty("rental.historyLoad", "background");
+    // Keep only records from the last N days in memory; 0 keeps all of them
+    private final long historyWindowDays = Long.getLong("rental.historyWindowDays", 0);
+    private final GroupCommitWriter writer;
+    // rental_records.txt plus its compressed archive segments
+    private final SegmentedRentalLog rentalLog;
+
+    // Holds every data file; the working directory for the shared instance
+    private final File dataDir;
+    // Durable state: checkpoint plus the event log tail written since it
+    private final File checkpointFile;
+    private final EventLog eventLog;
+    private final long checkpointInterval = Long.getLong("rental.checkpointInterval", 10000);
+    private final AtomicBoolean checkpointPending = new AtomicBoolean();
+    private final Object checkpointLock = new Object();
+    private final ExecutorService checkpointExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "rental-checkpoint");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile long lastCheckpointSequence;
+    // Active RENT record for every vehicle currently out, and the rentals already returned
+    private final OpenRentalIndex openRentals = new OpenRentalIndex();
+    // Deltas for views and reports that would otherwise rescan the lists
+    private final RentalEventBus events = new RentalEventBus();
+    // Customer holding each vehicle in Held status via holdVehicle
+    private final ConcurrentHashMap<Vehicle, Customer> holds = new ConcurrentHashMap<>();
+
+    // Follows the constructor's loading from the threads doing it
+    public interface StartupListener {
+        void stage(String description);
+
+        void fileProgress(String file, long bytesDone, long bytesTotal);
+    }
+
+    private static volatile StartupListener startupListener;
+
+    // Takes effect only if set before the first getInstance
+    public static void setStartupListener(StartupListener listener) {
+        startupListener = listener;
+    }
+
+    // Initialization-on-demand holder: the JVM publishes the instance safely on first use
+    private static class Holder {
+        static final RentalSystem INSTANCE = new RentalSystem();
+    }
 
-    private static RentalSystem instance;
-    
     public static RentalSystem getInstance() {
-        if (instance == null) {
-            instance = new RentalSystem();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
     
     private RentalSystem() {
+        this(new File("."));
+        // Checkpoint and drain queued lines when the app calls System.exit
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "rental-shutdown"));
+    }
+
+    // A separate instance over the data files in dataDir; for tests, which must not touch the shared files
+    RentalSystem(File dataDir) {
+        this.dataDir = dataDir;
+        this.checkpointFile = new File(dataDir, "rental.checkpoint");
+        writer = new GroupCommitWriter(GroupCommitWriter.Durability.valueOf(
+            System.getProperty("rental.durability", "FLUSH_ON_BATCH")));
+        eventLog = new EventLog(dataDir, writer);
+        rentalLog = new SegmentedRentalLog(dataDir, "rental_records.txt", writer,
+            Long.getLong("rental.logSegmentBytes", SegmentedRentalLog.DEFAULT_SEGMENT_BYTES),
+            Boolean.getBoolean("rental.logSegmentMonthly"));
         loadData();
     }
 
-    public void addVehicle(Vehicle vehicle) {
+    // Writes a checkpoint and drains queued lines; the shared instance does this at exit
+    void close() {
+        writeCheckpoint();
+        writer.close();
+        checkpointExecutor.shutdown();
+    }
+
+    private String dataPath(String name) {
+        return new File(dataDir, name).getPath();
+    }
+
+    // Returns false if the vehicle has no plate or the plate is taken
+    public boolean addVehicle(Vehicle vehicle) {
+        if (vehicle.getPlateKey() == PlateCodec.INVALID) {
+            System.out.println("Error: Vehicle must have a license plate.");
+            return false;
+        }
         // Check for duplicate license plate
-        if (findVehicleByPlate(vehicle.getLicensePlate()) != null) {
-            System.out.println("Error: Vehicle with license plate " + 
-                              vehicle.getLicensePlate() + " already exists.");
-            return;
+        catalogLock.writeLock().lock();
+        try {
+            if (vehiclesByPlate.containsKey(vehicle.getPlateKey())) {
+                System.out.println("Error: Vehicle with license plate " + 
+                                  vehicle.getLicensePlate() + " already exists.");
+                return false;
+            }
+            indexVehicle(vehicle);
+        } finally {
+            catalogLock.writeLock().unlock();
         }
-        vehicles.add(vehicle);
-        saveVehicle(vehicle);
+        String line = VehicleCodec.toText(vehicle);
+        logEvent("V," + line);
+        save(dataPath("vehicles.txt"), line);
+        events.vehicleAdded(vehicle);
         System.out.println("Vehicle added successfully!");
+        return true;
     }
 
     public boolean addCustomer(Customer customer) {
-        if (findCustomerById(customer.getCustomerId()) != null) {
+        if (!indexCustomer(customer)) {
             System.out.println("Error: Customer with ID " + customer.getCustomerId() + " already exists.");
             return false;
         }
-        customers.add(customer);
-        saveCustomer(customer);
+        String line = customer.getCustomerId() + "," + customer.getCustomerName();
+        logEvent("C," + line);
+        save(dataPath("customers.txt"), line);
+        events.customerAdded(customer);
         System.out.println("Customer added successfully.");
         return true;
     }
 
     public boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
-        if (vehicle.getStatus() == Vehicle.VehicleStatus.Available) {
-            vehicle.setStatus(Vehicle.VehicleStatus.Rented);
-            RentalRecord record = new RentalRecord(vehicle, customer, date, amount, "RENT");
-            rentalHistory.addRecord(record);
-            saveRecord(record);
-            System.out.println("Vehicle rented to " + customer.getCustomerName());
-            return true;
-        } else {
+        // Reserve first so the RENT record is in history before anyone can see the vehicle as Rented
+        if (!vehicle.tryTransition(Vehicle.VehicleStatus.Available, Vehicle.VehicleStatus.Held)) {
             System.out.println("Vehicle is not available for renting.");
             return false;
         }
+        recordAndSettle(vehicle, customer, date, amount, "RENT", Vehicle.VehicleStatus.Rented);
+        System.out.println("Vehicle rented to " + customer.getCustomerName());
+        return true;
     }
 
     public boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date, double extraFees) {
-        if (vehicle.getStatus() == Vehicle.VehicleStatus.Rented) {
-            vehicle.setStatus(Vehicle.VehicleStatus.Available);
-            RentalRecord record = new RentalRecord(vehicle, customer, date, extraFees, "RETURN");
-            rentalHistory.addRecord(record);
-            saveRecord(record);
-            System.out.println("Vehicle returned by " + customer.getCustomerName());
-            return true;
-        } else {
+        if (!vehicle.tryTransition(Vehicle.VehicleStatus.Rented, Vehicle.VehicleStatus.Held)) {
             System.out.println("Vehicle is not rented.");
             return false;
         }
+        // Checked once we own the vehicle, so the rental can't change underneath us
+        Customer renter = openRentals.renter(vehicle);
+        if (renter != null && !renter.getCustomerId().equals(customer.getCustomerId())) {
+            vehicle.tryTransition(Vehicle.VehicleStatus.Held, Vehicle.VehicleStatus.Rented);
+            System.out.println("Vehicle is rented to another customer.");
+            return false;
+        }
+        recordAndSettle(vehicle, customer, date, extraFees, "RETURN", Vehicle.VehicleStatus.Available);
+        System.out.println("Vehicle returned by " + customer.getCustomerName());
+        return true;
+    }
+
+    // Places an Available vehicle on hold for one customer until confirmHold or releaseHold
+    public boolean holdVehicle(Vehicle vehicle, Customer customer) {
+        if (!vehicle.tryTransition(Vehicle.VehicleStatus.Available, Vehicle.VehicleStatus.Held)) {
+            System.out.println("Vehicle is not available for holding.");
+            return false;
+        }
+        holds.put(vehicle, customer);
+        System.out.println("Vehicle held for " + customer.getCustomerName());
+        return true;
+    }
+
+    public boolean confirmHold(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
+        if (!holds.remove(vehicle, customer)) {
+            System.out.println("Vehicle is not held for " + customer.getCustomerName() + ".");
+            return false;
+        }
+        recordAndSettle(vehicle, customer, date, amount, "RENT", Vehicle.VehicleStatus.Rented);
+        System.out.println("Vehicle rented to " + customer.getCustomerName());
+        return true;
+    }
+
+    public boolean releaseHold(Vehicle vehicle, Customer customer) {
+        if (!holds.remove(vehicle, customer)) {
+            System.out.println("Vehicle is not held for " + customer.getCustomerName() + ".");
+            return false;
+        }
+        vehicle.tryTransition(Vehicle.VehicleStatus.Held, Vehicle.VehicleStatus.Available);
+        System.out.println("Hold released by " + customer.getCustomerName());
+        return true;
+    }
+
+    public Customer getHolder(Vehicle vehicle) {
+        return holds.get(vehicle);
+    }
+
+    // The caller owns the vehicle in Held status; nobody else can move it until we settle
+    private void recordAndSettle(Vehicle vehicle, Customer customer, LocalDate date, double amount,
+                                 String recordType, Vehicle.VehicleStatus settled) {
+        RentalRecord record = new RentalRecord(vehicle, customer, date, amount, recordType);
+        rentalHistory.addRecord(record);
+        snapshot.updateAndGet(FleetSnapshot::withRecordAdded);
+        statusTimeline.recordAdded(date);
+        if (settled == Vehicle.VehicleStatus.Rented) {
+            openRentals.open(record);
+        } else {
+            openRentals.close(record);
+        }
+        String line = formatRecord(record);
+        try {
+            logEvent(line);
+            try {
+                rentalLog.append(line, date);
+            } catch (RuntimeException e) {
+                System.out.println("Error saving rental record: " + e.getMessage());
+            }
+            events.recordAppended(record);
+        } finally {
+            // Only now can another thread move the vehicle, so its record can't overtake this one
+            vehicle.tryTransition(Vehicle.VehicleStatus.Held, settled);
+        }
+    }
+
+    public RentalRecord getOpenRental(Vehicle vehicle) {
+        return openRentals.get(vehicle);
+    }
+
+    public Customer getRenter(Vehicle vehicle) {
+        return openRentals.renter(vehicle);
+    }
+
+    // Returned rentals of this vehicle, oldest first
+    public List<OpenRentalIndex.ClosedRental> getClosedRentals(Vehicle vehicle) {
+        return openRentals.closedRentals(vehicle);
+    }
+
+    public double getAverageRentalDays() {
+        return openRentals.averageDays();
+    }
+
+    /**
+     * Rented if the vehicle was out at the end of that day by the RENT and
+     * RETURN records, Available otherwise; holds and other statuses are not
+     * kept in history. Null for an unknown plate.
+     */
+    public Vehicle.VehicleStatus getStatusAsOf(String plate, LocalDate date) {
+        Vehicle vehicle = findVehicleByPlate(plate);
+        if (vehicle == null) return null;
+        return statusTimeline.isRentedOn(vehicle.getPlateKey(), date)
+            ? Vehicle.VehicleStatus.Rented : Vehicle.VehicleStatus.Available;
+    }
+
+    // Vehicles that were out at the end of that day, in plate order
+    public List<Vehicle> getVehiclesOutOn(LocalDate date) {
+        List<Vehicle> result = new ArrayList<>();
+        for (int plateKey : statusTimeline.rentedOn(date)) {
+            Vehicle vehicle = vehicleByPlateKey(plateKey);
+            if (vehicle != null) result.add(vehicle);
+        }
+        return result;
     }
 
     public void displayVehicles(Vehicle.VehicleStatus status) {
@@ -84,52 +293,59 @@ public class RentalSystem {
             "Type", "Plate", "Make", "Model", "Year", "Status");
         System.out.println("|--------------------------------------------------------------------------------------------|");
         
-        boolean found = false;
-        for (Vehicle vehicle : vehicles) {
-            if (status == null || vehicle.getStatus() == status) {
-                found = true;
-                String vehicleType;
-                if (vehicle instanceof Car) vehicleType = "Car";
-                else if (vehicle instanceof Minibus) vehicleType = "Minibus";
-                else if (vehicle instanceof PickupTruck) vehicleType = "Pickup Truck";
-                else vehicleType = "Unknown";
-
-                System.out.printf("| %-15s | %-12s | %-12s | %-12s | %-6d | %-18s |%n",
-                    vehicleType,
-                    vehicle.getLicensePlate(),
-                    vehicle.getMake(),
-                    vehicle.getModel(),
-                    vehicle.getYear(),
-                    vehicle.getStatus().toString()
-                );
+        int listed = 0;
+        if (status != null) {
+            // The status partition costs only the size of the result, not a pass over the fleet
+            for (Vehicle vehicle : fleetIndex.list(status)) {
+                printVehicleRow(vehicle, status);
+                listed++;
+            }
+        } else {
+            FleetSnapshot fleet = snapshot.get();
+            for (int i = 0; i < fleet.getVehicleCount(); i++) {
+                printVehicleRow(fleet.getVehicle(i), fleet.getStatus(i));
+                listed++;
             }
         }
-        if (!found) {
+        if (listed == 0) {
             if (status == null) System.out.println("  No Vehicles found.");
             else System.out.println("  No vehicles with Status: " + status);
         }
         System.out.println();
     }
 
+    private static void printVehicleRow(Vehicle vehicle, Vehicle.VehicleStatus status) {
+        System.out.printf("| %-15s | %-12s | %-12s | %-12s | %-6d | %-18s |%n",
+            VehicleCodec.displayName(vehicle),
+            vehicle.getLicensePlate(),
+            vehicle.getMake(),
+            vehicle.getModel(),
+            vehicle.getYear(),
+            status.toString()
+        );
+    }
+
     public void displayAllCustomers() {
-        if (customers.isEmpty()) {
+        List<Customer> listed = snapshot.get().getCustomers();
+        if (listed.isEmpty()) {
             System.out.println("  No customers found.");
         } else {
-            for (Customer c : customers) {
+            for (Customer c : listed) {
                 System.out.println("  " + c.toString());
             }
         }
     }
 
     public void displayRentalHistory() {
-        if (rentalHistory.getRentalHistory().isEmpty()) {
+        List<RentalRecord> records = snapshot.get().getRentalHistory();
+        if (records.isEmpty()) {
             System.out.println("  No rental history found.");
         } else {
             System.out.printf("|%-10s | %-12s | %-20s | %-12s | %-12s |%n", 
                 "Type", "Plate", "Customer", "Date", "Amount");
             System.out.println("|-------------------------------------------------------------------------------|");
 
-            for (RentalRecord record : rentalHistory.getRentalHistory()) {
+            for (RentalRecord record : records) {
                 System.out.printf("| %-9s | %-12s | %-20s | %-12s | $%-11.2f |%n",
                     record.getRecordType(),
                     record.getVehicle().getLicensePlate(),
@@ -142,203 +358,533 @@ public class RentalSystem {
         }
     }
 
+    // "compact" (default) and "compact-offheap" store records in primitive columns; "objects" keeps RentalRecord objects
+    private static RentalHistory createHistory(String mode) {
+        switch (mode) {
+            case "objects":
+                return new RentalHistory();
+            case "compact-offheap":
+                return new RentalHistory(new CompactHistoryStore(true));
+            default:
+                return new RentalHistory(new CompactHistoryStore(false));
+        }
+    }
+
+    public RentalHistory getRentalHistory() {
+        return rentalHistory;
+    }
+
     public Vehicle findVehicleByPlate(String plate) {
-        for (Vehicle v : vehicles) {
-            if (v.getLicensePlate().equalsIgnoreCase(plate)) return v;
+        return vehicleByPlateKey(PlateCodec.encode(plate));
+    }
+
+    private Vehicle vehicleByPlateKey(int key) {
+        if (key == PlateCodec.INVALID) return null;
+        catalogLock.readLock().lock();
+        try {
+            return vehiclesByPlate.get(key);
+        } finally {
+            catalogLock.readLock().unlock();
         }
-        return null;
     }
 
     public Customer findCustomerById(String id) {  // Changed to String
-        for (Customer c : customers) {
-            if (c.getCustomerId().equals(id)) return c;  // Changed to equals for String
-        }
-        return null;
-    }
-
-    // File Storage Methods
-    private void saveVehicle(Vehicle vehicle) {
-        try (PrintWriter out = new PrintWriter(new FileWriter("vehicles.txt", true))) {
-            String type;
-            String extraInfo = "";
-            
-            if (vehicle instanceof Car) {
-                type = "Car";
-                Car car = (Car) vehicle;
-                extraInfo = "," + car.getNumberOfSeats();
-            } else if (vehicle instanceof Minibus) {
-                type = "Minibus";
-                Minibus bus = (Minibus) vehicle;
-                extraInfo = "," + bus.isAccessible();
-            } else if (vehicle instanceof PickupTruck) {
-                type = "PickupTruck";
-                PickupTruck truck = (PickupTruck) vehicle;
-                extraInfo = "," + truck.getCargoSize() + "," + truck.hasTrailer();
-            } else {
-                type = "Unknown";
-            }
-            
-            out.println(vehicle.getLicensePlate() + "," + 
-                       vehicle.getMake() + "," +
-                       vehicle.getModel() + "," + 
-                       vehicle.getYear() + "," +
-                       type + extraInfo);
-        } catch (IOException e) {
-            System.out.println("Error saving vehicle: " + e.getMessage());
+        if (id == null) return null;
+        return customersById.get(id);
+    }
+
+    public List<Vehicle> getVehicles() {
+        return new ArrayList<>(snapshot.get().getVehicles());
+    }
+
+    // Consistent point-in-time view of vehicles, statuses, customers and history
+    public FleetSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    // Type-ahead name search; see CustomerDirectory for the ranking
+    public List<Customer> lookupCustomers(String text, int limit) {
+        return customerDirectory.lookup(text, limit);
+    }
+
+    public List<Vehicle> searchVehicles(VehicleQuery query) {
+        return vehicleSearch.search(query);
+    }
+
+    public List<Vehicle> getAvailableVehicles() {
+        return fleetIndex.list(Vehicle.VehicleStatus.Available);
+    }
+
+    // Vehicles with this status right now, or all vehicles for null
+    public List<Vehicle> getVehicles(Vehicle.VehicleStatus status) {
+        return status == null ? getVehicles() : fleetIndex.list(status);
+    }
+
+    // A page of getVehicles(status) without copying the rest of it
+    public List<Vehicle> getVehicles(Vehicle.VehicleStatus status, int from, int count) {
+        return fleetIndex.page(status, from, count);
+    }
+
+    // O(1); vehicles with this status right now
+    public int countVehicles(Vehicle.VehicleStatus status) {
+        return fleetIndex.count(status);
+    }
+
+    public List<Customer> getCustomers() {
+        return new ArrayList<>(snapshot.get().getCustomers());
+    }
+
+    // Caller must hold the catalog write lock, or be loading inside the constructor
+    private void indexVehicle(Vehicle vehicle) {
+        int slot = vehicles.size();
+        vehicles.add(vehicle);
+        vehiclesByPlate.put(vehicle.getPlateKey(), vehicle);
+        fleetIndex.refresh(vehicle);
+        vehicleSearch.add(vehicle);
+        snapshot.updateAndGet(s -> s.withVehicle(vehicle));
+        vehicle.setStatusListener((v, from, to) -> {
+            fleetIndex.refresh(v);
+            // Rereads the status on every attempt, so racing transitions publish the latest one last
+            snapshot.updateAndGet(s -> s.withStatus(slot, v.getStatus()));
+            logEvent("S," + v.getLicensePlate() + "," + to);
+            events.statusChanged(v, from, to);
+        });
+    }
+
+    // Restores persisted status without logging it, keeping the fleet index in step
+    private void restoreStatus(Vehicle vehicle, Vehicle.VehicleStatus status) {
+        vehicle.restoreStatus(status);
+        fleetIndex.refresh(vehicle);
+    }
+
+    // Returns false if the ID is already taken
+    private boolean indexCustomer(Customer customer) {
+        if (customersById.putIfAbsent(customer.getCustomerId(), customer) != null) {
+            return false;
+        }
+        catalogLock.writeLock().lock();
+        try {
+            customers.add(customer);
+            snapshot.updateAndGet(s -> s.withCustomer(customer));
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        customerDirectory.add(customer);
+        return true;
+    }
+
+    // Waits until every line queued so far has reached the data files
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (UncheckedIOException e) {
+            System.out.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    // Subscribe here for vehicle, status, customer and record changes as they happen
+    public RentalEventBus getEventBus() {
+        return events;
+    }
+
+    // Exposes sequence numbers so callers can wait on a specific write with awaitDurable
+    public GroupCommitWriter getWriter() {
+        return writer;
+    }
+
+    // File Storage Methods: lines are queued and written in batches by the writer thread
+
+    // Called once the change is made in memory, so a line that can't be queued is reported rather than thrown
+    private void save(String path, String line) {
+        try {
+            writer.append(path, line);
+        } catch (RuntimeException e) {
+            System.out.println("Error saving to " + path + ": " + e.getMessage());
+        }
+    }
+
+    private String formatRecord(RentalRecord record) {
+        return record.getRecordType() + "," +
+               record.getVehicle().getLicensePlate() + "," +
+               record.getCustomer().getCustomerId() + "," +
+               record.getRecordDate() + "," +
+               record.getTotalAmount();
+    }
+
+    /**
+     * Event log payloads: V (vehicle added), C (customer added), S (status
+     * change), RENT, RETURN. Runs from status listeners after the change is
+     * made, so it reports a failure to queue the line instead of throwing;
+     * write errors surface later through the writer's awaitDurable.
+     */
+    private void logEvent(String payload) {
+        long sequence;
+        try {
+            sequence = eventLog.append(payload);
+        } catch (RuntimeException e) {
+            System.out.println("Error logging event: " + e.getMessage());
+            return;
+        }
+        if (sequence - lastCheckpointSequence >= checkpointInterval && checkpointPending.compareAndSet(false, true)) {
+            checkpointExecutor.execute(this::writeCheckpoint);
         }
     }
 
-    private void saveCustomer(Customer customer) {
-        try (PrintWriter out = new PrintWriter(new FileWriter("customers.txt", true))) {
-            out.println(customer.getCustomerId() + "," + customer.getCustomerName());
-        } catch (IOException e) {
-            System.out.println("Error saving customer: " + e.getMessage());
+    private void writeCheckpoint() {
+        synchronized (checkpointLock) {
+            try {
+                List<String> lines = new ArrayList<>();
+                long sequence = eventLog.rollover(() -> captureState(lines));
+                new Checkpoint(sequence, lines).write(checkpointFile);
+                lastCheckpointSequence = sequence;
+                eventLog.discardThrough(sequence);
+            } catch (IOException e) {
+                System.out.println("Error writing checkpoint: " + e.getMessage());
+            } finally {
+                checkpointPending.set(false);
+            }
         }
     }
 
-    private void saveRecord(RentalRecord record) {
-        try (PrintWriter out = new PrintWriter(new FileWriter("rental_records.txt", true))) {
-            out.println(record.getRecordType() + "," +
-                       record.getVehicle().getLicensePlate() + "," +
-                       record.getCustomer().getCustomerId() + "," +
-                       record.getRecordDate() + "," +
-                       record.getTotalAmount());
-        } catch (IOException e) {
-            System.out.println("Error saving rental record: " + e.getMessage());
+    private void captureState(List<String> lines) {
+        for (Vehicle v : getVehicles()) {
+            StringBuilder line = new StringBuilder("V,").append(v.getStatus()).append(',');
+            VehicleCodec.appendText(v, line);
+            lines.add(line.toString());
+        }
+        for (Customer c : getCustomers()) {
+            lines.add("C," + c.getCustomerId() + "," + c.getCustomerName());
+        }
+        for (RentalRecord r : openRentals.openRecords()) {
+            lines.add("O," + formatRecord(r));
         }
     }
 
     // Data Loading Methods
     private void loadData() {
-        loadVehicles();
-        loadCustomers();
-        loadRentalRecords();
+        stage("Recovering rental log");
+        rentalLog.recover();
+        stage("Reading checkpoint");
+        Checkpoint checkpoint = Checkpoint.read(checkpointFile);
+        if (checkpoint != null) {
+            restoreCheckpoint(checkpoint);
+        }
+        stage("Loading data files");
+        // Archived segments stay on disk until a query reaches them
+        rentalHistory.attachArchive(rentalLog, cursor -> parseRecord(cursor.split(), 0), this::customerIdsByName);
+        // Without a checkpoint vehicle status comes from history, so it has to load up front
+        loadTextFiles(checkpoint == null, checkpoint == null ? "eager" : historyLoadMode);
+        if (checkpoint == null) {
+            // First start on plain text files: the last RENT/RETURN per vehicle gives its status
+            restoreStatusFromHistory();
+        }
+
+        stage("Replaying event log");
+        long base = checkpoint == null ? 0 : checkpoint.getSequence();
+        int replayed = eventLog.recover(base, this::applyEvent);
+        settleHeldVehicles();
+        // Statuses were restored without notifying anyone, so publish them in one go
+        snapshot.updateAndGet(FleetSnapshot::withCurrentStatuses);
+        lastCheckpointSequence = base;
+        if (checkpoint == null || replayed > 0) {
+            writeCheckpoint();
+        }
         System.out.println("Data loaded successfully.");
     }
 
-    private void loadVehicles() {
-        File file = new File("vehicles.txt");
-        if (!file.exists()) {
-            System.out.println("No vehicle data found. Starting with empty vehicle list.");
-            return;
-        }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int count = 0;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 5) {
-                    String plate = parts[0];
-                    String make = parts[1];
-                    String model = parts[2];
-                    int year = Integer.parseInt(parts[3]);
-                    String type = parts[4];
-                    
-                    Vehicle vehicle = null;
-                    
-                    switch (type) {
-                        case "Car":
-                            if (parts.length >= 6) {
-                                int seats = Integer.parseInt(parts[5]);
-                                vehicle = new Car(make, model, year, seats);
-                            }
-                            break;
-                        case "Minibus":
-                            if (parts.length >= 6) {
-                                boolean accessible = Boolean.parseBoolean(parts[5]);
-                                vehicle = new Minibus(make, model, year, accessible);
-                            }
-                            break;
-                        case "PickupTruck":
-                            if (parts.length >= 7) {
-                                double cargoSize = Double.parseDouble(parts[5]);
-                                boolean hasTrailer = Boolean.parseBoolean(parts[6]);
-                                vehicle = new PickupTruck(make, model, year, cargoSize, hasTrailer);
-                            }
-                            break;
-                    }
-                    
-                    if (vehicle != null) {
-                        vehicle.setLicensePlate(plate);
-                        // Check for duplicates before adding
-                        if (findVehicleByPlate(plate) == null) {
-                            vehicles.add(vehicle);
-                            count++;
+    private static void stage(String description) {
+        StartupListener listener = startupListener;
+        if (listener != null) listener.stage(description);
+    }
+
+    private void restoreCheckpoint(Checkpoint checkpoint) {
+        int vehicleCount = 0;
+        int customerCount = 0;
+        for (String line : checkpoint.getLines()) {
+            String[] parts = line.split(",");
+            try {
+                switch (parts[0]) {
+                    case "V":
+                        Vehicle vehicle = parseVehicle(line, 2);
+                        if (vehicle != null && !vehiclesByPlate.containsKey(vehicle.getPlateKey())) {
+                            restoreStatus(vehicle, Vehicle.VehicleStatus.valueOf(parts[1]));
+                            indexVehicle(vehicle);
+                            vehicleCount++;
                         }
-                    }
+                        break;
+                    case "C":
+                        if (indexCustomer(new Customer(parts[1], parts[2]))) customerCount++;
+                        break;
+                    case "O":
+                        RentalRecord record = parseRecord(parts, 1);
+                        if (record != null) openRentals.restoreOpen(record);
+                        break;
                 }
+            } catch (RuntimeException e) {
+                System.out.println("Skipping bad checkpoint line: " + line);
             }
-            System.out.println("Loaded " + count + " vehicles from file.");
-        } catch (IOException e) {
-            System.out.println("Error loading vehicles: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            System.out.println("Error parsing vehicle data: " + e.getMessage());
         }
+        System.out.println("Restored " + vehicleCount + " vehicles and " + customerCount +
+                           " customers from checkpoint " + checkpoint.getSequence() + ".");
     }
 
-    private void loadCustomers() {
-        File file = new File("customers.txt");
-        if (!file.exists()) {
-            System.out.println("No customer data found. Starting with empty customer list.");
-            return;
+    private void applyEvent(long sequence, String payload) {
+        String[] parts = payload.split(",");
+        try {
+            switch (parts[0]) {
+                case "V":
+                    Vehicle vehicle = parseVehicle(payload, 1);
+                    if (vehicle != null && !vehiclesByPlate.containsKey(vehicle.getPlateKey())) {
+                        indexVehicle(vehicle);
+                    }
+                    break;
+                case "C":
+                    indexCustomer(new Customer(parts[1], parts[2]));
+                    break;
+                case "S":
+                    Vehicle changed = findVehicleByPlate(parts[1]);
+                    if (changed != null) restoreStatus(changed, Vehicle.VehicleStatus.valueOf(parts[2]));
+                    break;
+                case "RENT":
+                    RentalRecord record = parseRecord(parts, 0);
+                    if (record != null) openRentals.restoreOpen(record);
+                    break;
+                case "RETURN":
+                    Vehicle returned = findVehicleByPlate(parts[1]);
+                    if (returned != null) openRentals.restoreReturned(returned);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Skipping bad event " + sequence + ": " + e.getMessage());
         }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int count = 0;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    String customerId = parts[0];
-                    String customerName = parts[1];
-                    
+    }
+
+    private void restoreStatusFromHistory() {
+        for (RentalRecord record : rentalHistory.getRentalHistory()) {
+            Vehicle vehicle = record.getVehicle();
+            if ("RENT".equals(record.getRecordType())) {
+                restoreStatus(vehicle, Vehicle.VehicleStatus.Rented);
+                openRentals.restoreOpen(record);
+            } else if ("RETURN".equals(record.getRecordType())) {
+                restoreStatus(vehicle, Vehicle.VehicleStatus.Available);
+                openRentals.restoreReturned(vehicle);
+            }
+        }
+    }
+
+    // Holds don't survive a restart, and a crash mid rent/return leaves a transient Held
+    private void settleHeldVehicles() {
+        for (Vehicle vehicle : vehicles) {
+            if (vehicle.getStatus() == Vehicle.VehicleStatus.Held) {
+                restoreStatus(vehicle, openRentals.get(vehicle) != null
+                    ? Vehicle.VehicleStatus.Rented : Vehicle.VehicleStatus.Available);
+            }
+        }
+    }
+
+    // Builds a vehicle from the vehicles.txt fields starting at field offset; null if the type is unknown
+    private static Vehicle parseVehicle(String line, int offset) {
+        LineCursor cursor = LineCursor.of(line);
+        for (int i = 0; i < offset; i++) {
+            cursor.skipField();
+        }
+        return VehicleCodec.parse(cursor);
+    }
+
+    // Builds a record from the rental_records.txt fields starting at offset; null if unlinked
+    private RentalRecord parseRecord(String[] parts, int offset) {
+        Vehicle vehicle = findVehicleByPlate(parts[offset + 1]);
+        Customer customer = findCustomerById(parts[offset + 2]);
+        if (vehicle == null || customer == null) {
+            return null;
+        }
+        return new RentalRecord(vehicle, customer, LocalDate.parse(parts[offset + 3]),
+                                Double.parseDouble(parts[offset + 4]), parts[offset]);
+    }
+
+    private static final class RecordRow {
+        String recordType;
+        int plateKey;
+        String customerId;
+        int epochDay;
+        double amount;
+    }
+
+    /**
+     * Parses the text files in parallel; vehicles and customers come from the
+     * checkpoint when there is one. Vehicles and customers are always linked
+     * before this returns. Rental records are linked now ("eager"), on a
+     * background thread ("background") or when history is first queried ("lazy").
+     */
+    private void loadTextFiles(boolean includeCatalog, String historyMode) {
+        ParallelDataLoader loader = new ParallelDataLoader();
+        StartupListener listener = startupListener;
+        if (listener != null) loader.setProgressListener(listener::fileProgress);
+        Quarantine quarantine = new Quarantine(dataPath("quarantine.txt"), writer);
+        quarantine.reset();
+        long started = System.nanoTime();
+        ForkJoinTask<List<RecordRow>> recordTask;
+        long hotLength;
+        try {
+            ForkJoinTask<List<Vehicle>> vehicleTask = null;
+            ForkJoinTask<List<Customer>> customerTask = null;
+            if (includeCatalog) {
+                vehicleTask = loader.submit(new File(dataDir, "vehicles.txt"), cursor -> {
+                    try {
+                        Vehicle vehicle = VehicleCodec.parse(cursor);
+                        if (vehicle == null) {
+                            quarantine.add("vehicles.txt", cursor.line(), "unknown vehicle type");
+                        }
+                        return vehicle;
+                    } catch (RuntimeException e) {
+                        quarantine.add("vehicles.txt", cursor.line(), describe(e));
+                        return null;
+                    }
+                });
+                customerTask = loader.submit(new File(dataDir, "customers.txt"), cursor -> {
+                    if (cursor.fieldCount() != 2) {
+                        quarantine.add("customers.txt", cursor.line(), "expected 2 fields");
+                        return null;
+                    }
+                    return new Customer(cursor.nextString(), cursor.nextString());
+                });
+            }
+            // Nothing appends while the constructor runs, so this is the length that gets mapped
+            hotLength = rentalLog.getHotFile().length();
+            recordTask = loader.submit(rentalLog.getHotFile(), cursor -> {
+                if (cursor.fieldCount() != 5) {
+                    quarantine.add("rental_records.txt", cursor.line(), "expected 5 fields");
+                    return null;
+                }
+                try {
+                    RecordRow row = new RecordRow();
+                    row.recordType = cursor.nextKnown("RENT", "RETURN");
+                    row.plateKey = cursor.nextPlateKey();
+                    row.customerId = cursor.nextString();
+                    row.epochDay = cursor.nextEpochDay();
+                    row.amount = cursor.nextDouble();
+                    if (row.plateKey == PlateCodec.INVALID) {
+                        quarantine.add("rental_records.txt", cursor.line(), "invalid license plate");
+                        return null;
+                    }
+                    return row;
+                } catch (RuntimeException e) {
+                    quarantine.add("rental_records.txt", cursor.line(), describe(e));
+                    return null;
+                }
+            });
+
+            if (includeCatalog) {
+                List<Vehicle> parsedVehicles = vehicleTask.join();
+                List<Customer> parsedCustomers = customerTask.join();
+                long linkStarted = System.nanoTime();
+                int vehicleCount = 0;
+                for (Vehicle vehicle : parsedVehicles) {
                     // Check for duplicates before adding
-                    if (findCustomerById(customerId) == null) {
-                        customers.add(new Customer(customerId, customerName));
-                        count++;
+                    if (!vehiclesByPlate.containsKey(vehicle.getPlateKey())) {
+                        indexVehicle(vehicle);
+                        vehicleCount++;
+                    } else {
+                        quarantine.add("vehicles.txt", VehicleCodec.toText(vehicle), "duplicate license plate");
+                    }
+                }
+                int customerCount = 0;
+                for (Customer customer : parsedCustomers) {
+                    if (indexCustomer(customer)) {
+                        customerCount++;
+                    } else {
+                        quarantine.add("customers.txt", customer.getCustomerId() + "," + customer.getCustomerName(),
+                                       "duplicate customer ID");
                     }
                 }
+                loader.recordPhase("link catalog", System.nanoTime() - linkStarted);
+                System.out.println("Loaded " + vehicleCount + " vehicles from file.");
+                System.out.println("Loaded " + customerCount + " customers from file.");
             }
-            System.out.println("Loaded " + count + " customers from file.");
-        } catch (IOException e) {
-            System.out.println("Error loading customers: " + e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error loading data: " + e.getMessage());
+            quarantine.report();
+            return;
         }
-    }
 
-    private void loadRentalRecords() {
-        File file = new File("rental_records.txt");
-        if (!file.exists()) {
-            System.out.println("No rental record data found. Starting with empty rental history.");
-            return;
+        Runnable linkRecords = () -> {
+            try {
+                linkRecords(recordTask.join(), hotLength, loader, quarantine, started);
+            } finally {
+                rentalHistory.finishLoading();
+            }
+        };
+        switch (historyMode) {
+            case "background":
+                rentalHistory.beginLoading(null);
+                Thread thread = new Thread(linkRecords, "rental-history-loader");
+                thread.setDaemon(true);
+                thread.start();
+                break;
+            case "lazy":
+                rentalHistory.beginLoading(linkRecords);
+                break;
+            default:
+                linkRecords(recordTask.join(), hotLength, loader, quarantine, started);
         }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int count = 0;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 5) {
-                    String recordType = parts[0];
-                    String licensePlate = parts[1];
-                    String customerId = parts[2];
-                    LocalDate recordDate = LocalDate.parse(parts[3]);
-                    double totalAmount = Double.parseDouble(parts[4]);
-                    
-                    Vehicle vehicle = findVehicleByPlate(licensePlate);
-                    Customer customer = findCustomerById(customerId);
-                    
-                    if (vehicle != null && customer != null) {
-                        rentalHistory.addRecord(new RentalRecord(vehicle, customer, recordDate, totalAmount, recordType));
-                        count++;
-                    }
+    }
+
+    // Adds the parsed hot-file records to history; with a window, older ones stay on disk
+    private void linkRecords(List<RecordRow> rows, long hotLength, ParallelDataLoader loader,
+                             Quarantine quarantine, long started) {
+        stage("Linking rental records");
+        loader.recordPhase("parse", System.nanoTime() - started);
+        long linkStarted = System.nanoTime();
+        int windowStart = historyWindowDays > 0
+            ? (int) LocalDate.now().minusDays(historyWindowDays).toEpochDay() : Integer.MIN_VALUE;
+        int recordCount = 0;
+        int pagedCount = 0;
+        for (RecordRow row : rows) {
+            Vehicle vehicle = vehicleByPlateKey(row.plateKey);
+            Customer customer = findCustomerById(row.customerId);
+            if (vehicle != null && customer != null) {
+                openRentals.replay(vehicle, customer, row.epochDay, row.recordType);
+                if (row.epochDay < windowStart) {
+                    pagedCount++;
+                    continue;
                 }
+                rentalHistory.addLoadedRecord(new RentalRecord(vehicle, customer,
+                    LocalDate.ofEpochDay(row.epochDay), row.amount, row.recordType));
+                recordCount++;
+            } else {
+                String line = row.recordType + "," + PlateCodec.decode(row.plateKey) + "," + row.customerId + ","
+                              + LocalDate.ofEpochDay(row.epochDay) + "," + row.amount;
+                quarantine.add("rental_records.txt", line, vehicle == null ? "unknown vehicle" : "unknown customer");
+            }
+        }
+        openRentals.finishReplay();
+        if (pagedCount > 0) {
+            try {
+                rentalHistory.pageFromDisk(rentalLog.pinHot(hotLength), windowStart, pagedCount);
+            } catch (IOException e) {
+                System.out.println("Error mapping older rental records: " + e.getMessage());
             }
-            System.out.println("Loaded " + count + " rental records from file.");
-        } catch (IOException e) {
-            System.out.println("Error loading rental records: " + e.getMessage());
-        } catch (DateTimeParseException | NumberFormatException e) {
-            System.out.println("Error parsing rental record data: " + e.getMessage());
         }
+        loader.recordPhase("link records", System.nanoTime() - linkStarted);
+        System.out.println("Loaded " + recordCount + " rental records from file" +
+                           (pagedCount > 0 ? ", left " + pagedCount + " older ones on disk." : "."));
+        quarantine.report();
+        System.out.println(loader.timingReport());
+    }
+
+    // IDs of the customers whose name contains this lowercase fragment
+    private List<String> customerIdsByName(String needle) {
+        List<String> ids = new ArrayList<>();
+        for (Customer customer : customersById.values()) {
+            String name = customer.getCustomerName();
+            if (name != null && name.toLowerCase(Locale.ROOT).contains(needle)) ids.add(customer.getCustomerId());
+        }
+        return ids;
+    }
+
+    private static String describe(RuntimeException e) {
+        return e.getClass().getSimpleName() + ": " + e.getMessage();
     }
 }
\ No newline at end of file
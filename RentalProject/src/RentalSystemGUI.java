@@ -2,14 +2,27 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class RentalSystemGUI extends JFrame {
+    private static final long serialVersionUID = 1L;
+
     private RentalSystem rentalSystem;
     private JTextArea outputArea;
+    private JTabbedPane tabs;
+    private JComboBox<Object> statusCombo;
+    // Read by the vehicle table's background selection; null shows every vehicle
+    private volatile Vehicle.VehicleStatus vehicleStatusFilter = Vehicle.VehicleStatus.Available;
+    private PagedTableModel<Vehicle> vehicleModel;
+    private PagedTableModel<Customer> customerModel;
+    private PagedTableModel<RentalRecord> historyModel;
+    private JLabel statusLabel;
     
-    public RentalSystemGUI() {
-        rentalSystem = RentalSystem.getInstance();
+    // Takes a loaded system; main builds it off the EDT
+    public RentalSystemGUI(RentalSystem rentalSystem) {
+        this.rentalSystem = rentalSystem;
         initializeGUI();
     }
     
@@ -42,12 +55,15 @@ public class RentalSystemGUI extends JFrame {
         JMenu customerMenu = new JMenu("Customers");
         JMenuItem addCustomerItem = new JMenuItem("Add Customer");
         JMenuItem viewCustomersItem = new JMenuItem("View Customers");
+        JMenuItem findCustomerItem = new JMenuItem("Find Customer");
         
         addCustomerItem.addActionListener(e -> showAddCustomerDialog());
         viewCustomersItem.addActionListener(e -> viewCustomers());
+        findCustomerItem.addActionListener(e -> showFindCustomerDialog());
         
         customerMenu.add(addCustomerItem);
         customerMenu.add(viewCustomersItem);
+        customerMenu.add(findCustomerItem);
         
         // Rental menu
         JMenu rentalMenu = new JMenu("Rentals");
@@ -91,14 +107,223 @@ public class RentalSystemGUI extends JFrame {
         outputArea.setEditable(false);
         JScrollPane scrollPane = new JScrollPane(outputArea);
         
+        // Tables fetch their rows in the background and follow changes as they happen
+        createTableModels();
+        statusCombo = new JComboBox<>();
+        statusCombo.addItem("All");
+        for (Vehicle.VehicleStatus status : Vehicle.VehicleStatus.values()) {
+            statusCombo.addItem(status);
+        }
+        statusCombo.setSelectedItem(vehicleStatusFilter);
+        statusCombo.addActionListener(e -> {
+            Object selected = statusCombo.getSelectedItem();
+            vehicleStatusFilter = selected instanceof Vehicle.VehicleStatus ? (Vehicle.VehicleStatus) selected : null;
+            vehicleModel.reload();
+        });
+        tabs = new JTabbedPane();
+        tabs.addTab("Vehicles", tablePanel(vehicleModel, new JLabel("Status:"), statusCombo));
+        tabs.addTab("Customers", tablePanel(customerModel));
+        tabs.addTab("Rental History", tablePanel(historyModel));
+        tabs.addTab("Activity", scrollPane);
+        rentalSystem.getEventBus().subscribe(RentalEvent.class, 4096,
+            event -> SwingUtilities.invokeLater(() -> applyChange(event)),
+            () -> SwingUtilities.invokeLater(this::reloadTables));
+        reloadTables();
+        
+        // Rental history may still be loading; everything else is ready
+        statusLabel = new JLabel(" ");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 8, 2, 8));
+        watchHistoryLoading();
+        
         // Main layout
         setLayout(new BorderLayout());
         add(buttonPanel, BorderLayout.NORTH);
-        add(scrollPane, BorderLayout.CENTER);
+        add(tabs, BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
         
         setVisible(true);
     }
     
+    private void watchHistoryLoading() {
+        RentalHistory history = rentalSystem.getRentalHistory();
+        if (history.isLoaded()) {
+            statusLabel.setText("Ready");
+            return;
+        }
+        statusLabel.setText("Rental history is loading in the background...");
+        Timer poll = new Timer(500, null);
+        poll.addActionListener(e -> {
+            if (history.isLoaded()) {
+                poll.stop();
+                statusLabel.setText("Ready");
+                historyModel.reload();
+            }
+        });
+        poll.start();
+    }
+    
+    // Runs a system call off the EDT and hands its result back on the EDT
+    private <T> void runInBackground(java.util.concurrent.Callable<T> task, java.util.function.Consumer<T> onResult) {
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.call();
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    onResult.accept(get());
+                } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                    JOptionPane.showMessageDialog(RentalSystemGUI.this, "Error: " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
+    private void createTableModels() {
+        // Unfiltered vehicles in natural order page straight from the snapshot or the status index
+        vehicleModel = PagedTableModel.<Vehicle>builder(selection -> {
+            Vehicle.VehicleStatus status = vehicleStatusFilter;
+            if (selection.filter.isEmpty() && selection.sortColumn < 0) {
+                FleetSnapshot fleet = rentalSystem.getSnapshot();
+                int size = status == null ? fleet.getVehicleCount() : rentalSystem.countVehicles(status);
+                return new PagedTableModel.Rows<Vehicle>() {
+                    public int size() {
+                        return size;
+                    }
+
+                    public List<Vehicle> page(int from, int count) {
+                        if (status != null) return rentalSystem.getVehicles(status, from, count);
+                        int end = Math.min(from + count, size);
+                        List<Vehicle> page = new ArrayList<>(Math.max(0, end - from));
+                        for (int i = from; i < end; i++) {
+                            page.add(fleet.getVehicle(i));
+                        }
+                        return page;
+                    }
+                };
+            }
+            String needle = selection.filter.toLowerCase();
+            List<Vehicle> matches = new ArrayList<>();
+            for (Vehicle v : rentalSystem.getVehicles(status)) {
+                if (needle.isEmpty() || contains(needle, v.getLicensePlate(), v.getMake(), v.getModel(),
+                                                 VehicleCodec.displayName(v))) {
+                    matches.add(v);
+                }
+            }
+            selection.sort(matches);
+            return PagedTableModel.listRows(matches);
+        })
+            .sortableColumn("Type", VehicleCodec::displayName)
+            .sortableColumn("Plate", Vehicle::getLicensePlate)
+            .sortableColumn("Make", Vehicle::getMake)
+            .sortableColumn("Model", Vehicle::getModel)
+            .sortableColumn("Year", Vehicle::getYear)
+            .sortableColumn("Status", Vehicle::getStatus)
+            .build();
+        
+        customerModel = PagedTableModel.<Customer>builder(selection -> {
+            List<Customer> matches = selection.filter.isEmpty() ? rentalSystem.getCustomers()
+                : rentalSystem.lookupCustomers(selection.filter, Integer.MAX_VALUE);
+            selection.sort(matches);
+            return PagedTableModel.listRows(matches);
+        })
+            .sortableColumn("Customer ID", Customer::getCustomerId)
+            .sortableColumn("Name", Customer::getCustomerName)
+            .build();
+        
+        // Unfiltered history pages straight from the store, so only the date order can be flipped
+        historyModel = PagedTableModel.<RentalRecord>builder(selection -> {
+            RentalHistory history = rentalSystem.getRentalHistory();
+            String filter = selection.filter;
+            if (filter.isEmpty()) {
+                int size = history.loadedCount();
+                boolean newestFirst = selection.sortColumn >= 0 && !selection.ascending;
+                return new PagedTableModel.Rows<RentalRecord>() {
+                    public int size() {
+                        return size;
+                    }
+                    
+                    public List<RentalRecord> page(int from, int count) {
+                        if (!newestFirst) return history.getLoadedRecords(from, Math.min(count, size - from));
+                        int end = size - from;
+                        List<RentalRecord> page = history.getLoadedRecords(Math.max(0, end - count), Math.min(count, end));
+                        Collections.reverse(page);
+                        return page;
+                    }
+                };
+            }
+            List<RentalRecord> matches;
+            if (PlateCodec.encode(filter) != PlateCodec.INVALID) {
+                matches = history.getRentalRecordsByVehicle(filter);
+            } else if (rentalSystem.findCustomerById(filter) != null) {
+                matches = history.getRentalRecordsByCustomerId(filter);
+            } else {
+                matches = history.getRentalRecordsByCustomer(filter);
+            }
+            selection.sort(matches);
+            return PagedTableModel.listRows(matches);
+        })
+            .column("Type", RentalRecord::getRecordType)
+            .column("Plate", r -> r.getVehicle().getLicensePlate())
+            .column("Customer", r -> r.getCustomer().getCustomerName())
+            .sortableColumn("Date", RentalRecord::getRecordDate)
+            .column("Amount", RentalRecord::getTotalAmount)
+            .build();
+    }
+    
+    private static boolean contains(String needle, String... values) {
+        for (String value : values) {
+            if (value != null && value.toLowerCase().contains(needle)) return true;
+        }
+        return false;
+    }
+    
+    // Filter box over a table; every keystroke reselects in the background
+    private JPanel tablePanel(PagedTableModel<?> model, JComponent... controls) {
+        JTextField filterField = new JTextField(20);
+        filterField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { model.setFilter(filterField.getText()); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { model.setFilter(filterField.getText()); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { model.setFilter(filterField.getText()); }
+        });
+        
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controlPanel.add(new JLabel("Filter:"));
+        controlPanel.add(filterField);
+        for (JComponent control : controls) {
+            controlPanel.add(control);
+        }
+        
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(controlPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(model.createTable()), BorderLayout.CENTER);
+        return panel;
+    }
+    
+    // Runs on the EDT for every event from the rental system
+    private void applyChange(RentalEvent event) {
+        if (event instanceof RentalEvent.StatusChanged) {
+            vehicleModel.refreshRow(((RentalEvent.StatusChanged) event).getVehicle());
+            // Under a status filter the vehicle may have joined or left the table
+            if (vehicleStatusFilter != null) vehicleModel.reloadSoon();
+        } else if (event instanceof RentalEvent.VehicleAdded) {
+            vehicleModel.reloadSoon();
+        } else if (event instanceof RentalEvent.CustomerAdded) {
+            customerModel.reloadSoon();
+        } else if (event instanceof RentalEvent.RecordAppended) {
+            historyModel.reloadSoon();
+        }
+    }
+    
+    // Also called when events were dropped, since the tables can no longer trust their deltas
+    private void reloadTables() {
+        vehicleModel.reload();
+        customerModel.reload();
+        historyModel.reload();
+    }
+    
     private class ButtonClickListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
             String command = ((JButton)e.getSource()).getText();
@@ -177,9 +402,16 @@ public class RentalSystemGUI extends JFrame {
                 }
                 
                 vehicle.setLicensePlate(plate);
-                rentalSystem.addVehicle(vehicle);
-                outputArea.append("Vehicle added: " + plate + "\n");
-                dialog.dispose();
+                addButton.setEnabled(false);
+                runInBackground(() -> rentalSystem.addVehicle(vehicle), added -> {
+                    if (added) {
+                        outputArea.append("Vehicle added: " + vehicle.getLicensePlate() + "\n");
+                        dialog.dispose();
+                    } else {
+                        addButton.setEnabled(true);
+                        JOptionPane.showMessageDialog(dialog, "Duplicate license plate: " + vehicle.getLicensePlate());
+                    }
+                });
                 
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage());
@@ -219,14 +451,16 @@ public class RentalSystemGUI extends JFrame {
             
             if (!id.isEmpty() && !name.isEmpty()) {
                 Customer customer = new Customer(id, name);
-                boolean added = rentalSystem.addCustomer(customer);
-                
-                if (added) {
-                    outputArea.append("Customer added: " + name + " (ID: " + id + ")\n");
-                    dialog.dispose();
-                } else {
-                    JOptionPane.showMessageDialog(dialog, "Duplicate customer ID: " + id);
-                }
+                addButton.setEnabled(false);
+                runInBackground(() -> rentalSystem.addCustomer(customer), added -> {
+                    if (added) {
+                        outputArea.append("Customer added: " + name + " (ID: " + id + ")\n");
+                        dialog.dispose();
+                    } else {
+                        addButton.setEnabled(true);
+                        JOptionPane.showMessageDialog(dialog, "Duplicate customer ID: " + id);
+                    }
+                });
             } else {
                 JOptionPane.showMessageDialog(dialog, "Please fill in all fields");
             }
@@ -245,6 +479,39 @@ public class RentalSystemGUI extends JFrame {
         dialog.setVisible(true);
     }
     
+    // Matches refresh on every keystroke
+    private void showFindCustomerDialog() {
+        JDialog dialog = new JDialog(this, "Find Customer", true);
+        dialog.setLayout(new BorderLayout(10, 10));
+        dialog.setSize(400, 300);
+        
+        JTextField queryField = new JTextField();
+        DefaultListModel<Customer> matches = new DefaultListModel<>();
+        JList<Customer> matchList = new JList<>(matches);
+        
+        queryField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { refresh(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { refresh(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { refresh(); }
+            
+            private void refresh() {
+                matches.clear();
+                for (Customer c : rentalSystem.lookupCustomers(queryField.getText(), 50)) {
+                    matches.addElement(c);
+                }
+            }
+        });
+        
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dialog.dispose());
+        
+        dialog.add(queryField, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(matchList), BorderLayout.CENTER);
+        dialog.add(closeButton, BorderLayout.SOUTH);
+        
+        dialog.setVisible(true);
+    }
+    
     private void showRentDialog() {
         outputArea.append("=== Rent Vehicle ===\n");
         outputArea.append("(For full rental functionality, use the console application)\n");
@@ -258,33 +525,42 @@ public class RentalSystemGUI extends JFrame {
     }
     
     private void viewAvailableVehicles() {
-        outputArea.append("\n=== Available Vehicles ===\n");
-        List<Vehicle> available = rentalSystem.getAvailableVehicles();
-        
-        if (available.isEmpty()) {
-            outputArea.append("No vehicles available.\n");
-        } else {
-            for (Vehicle v : available) {
-                outputArea.append(v.toString() + "\n");
-            }
-        }
-        outputArea.append("\n");
+        statusCombo.setSelectedItem(Vehicle.VehicleStatus.Available);
+        tabs.setSelectedIndex(0);
     }
     
     private void viewCustomers() {
-        outputArea.append("\n=== Customers ===\n");
-        rentalSystem.displayAllCustomers();
-        outputArea.append("(Customers displayed in console above)\n\n");
+        tabs.setSelectedIndex(1);
     }
     
     private void viewRentalHistory() {
-        outputArea.append("\n=== Rental History ===\n");
-        rentalSystem.displayRentalHistory();
-        outputArea.append("(Rental history displayed in console above)\n\n");
+        tabs.setSelectedIndex(2);
     }
     
     public static void main(String[] args) {
-        // Run on Event Dispatch Thread
-        SwingUtilities.invokeLater(() -> new RentalSystemGUI());
+        // Load on a worker thread behind a splash, then build the window on the Event Dispatch Thread
+        SwingUtilities.invokeLater(() -> {
+            StartupSplash splash = new StartupSplash();
+            splash.setVisible(true);
+            RentalSystem.setStartupListener(splash);
+            new SwingWorker<RentalSystem, Void>() {
+                @Override
+                protected RentalSystem doInBackground() {
+                    return RentalSystem.getInstance();
+                }
+                
+                @Override
+                protected void done() {
+                    RentalSystem.setStartupListener(null);
+                    splash.dispose();
+                    try {
+                        new RentalSystemGUI(get());
+                    } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                        JOptionPane.showMessageDialog(null, "Could not load rental data: " + e.getMessage());
+                        System.exit(1);
+                    }
+                }
+            }.execute();
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,526 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The rental record log, split into segments. New records go to the hot
+ * file (rental_records.txt). When it passes the size limit, or a record
+ * falls in a new month in monthly mode, the writer renames it to a numbered
+ * segment and a background thread compresses that into cold storage:
+ *
+ *   rental_records-000001.txt.gz   blocks of records, each its own gzip member
+ *   rental_records-000001.idx      date range and record count of the segment
+ *                                  and of every block, with the block's byte offset
+ *                                  and KeyFilters of the plates and customers in it
+ *
+ * The .idx is written last, so a segment without one is still being
+ * archived and is finished on the next start. Only the hot file is loaded
+ * at startup; cold segments are read block by block when a query needs them,
+ * and lookups by plate or customer skip blocks whose filters rule them out.
+ * Indexes written before the filters existed are still read; their blocks
+ * just can't be skipped that way.
+ */
+public class SegmentedRentalLog {
+    public static final long DEFAULT_SEGMENT_BYTES = 16 << 20;
+    private static final int BLOCK_RECORDS = 4096;
+    private static final String INDEX_VERSION = "SEGMENT,2";
+    private static final String UNFILTERED_INDEX_VERSION = "SEGMENT,1";
+    // Above this many customer IDs, checking every filter costs more than it saves
+    private static final int MAX_FILTERED_CUSTOMERS = 4096;
+
+    public static final class Block {
+        final long offset;
+        final int length;
+        final int minDay;
+        final int maxDay;
+        final int count;
+        // Null in indexes written before the filters existed
+        final KeyFilter plates;
+        final KeyFilter customers;
+
+        Block(long offset, int length, int minDay, int maxDay, int count, KeyFilter plates, KeyFilter customers) {
+            this.offset = offset;
+            this.length = length;
+            this.minDay = minDay;
+            this.maxDay = maxDay;
+            this.count = count;
+            this.plates = plates;
+            this.customers = customers;
+        }
+
+        boolean mayHavePlate(int plateKey) {
+            return plates == null || plates.mightContain(plateKey);
+        }
+
+        boolean mayHaveCustomer(int customerKey) {
+            return customers == null || customers.mightContain(customerKey);
+        }
+    }
+
+    public static final class Segment {
+        private final int number;
+        private final File file;
+        private final int minDay;
+        private final int maxDay;
+        private final int count;
+        private final List<Block> blocks;
+
+        Segment(int number, File file, int minDay, int maxDay, int count, List<Block> blocks) {
+            this.number = number;
+            this.file = file;
+            this.minDay = minDay;
+            this.maxDay = maxDay;
+            this.count = count;
+            this.blocks = blocks;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean overlaps(int fromDay, int toDay) {
+            return count > 0 && minDay <= toDay && maxDay >= fromDay;
+        }
+    }
+
+    private final File directory;
+    private final String baseName;
+    private final File hotFile;
+    private final GroupCommitWriter writer;
+    private final long segmentBytes;
+    private final boolean monthly;
+    private final ExecutorService archiver = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "rental-log-archiver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by this
+    private long hotBytes;
+    private int hotMonth = -1;
+    private int nextNumber = 1;
+    private final List<Segment> segments = new ArrayList<>();
+
+    public SegmentedRentalLog(File directory, String hotName, GroupCommitWriter writer,
+                              long segmentBytes, boolean monthly) {
+        this.directory = directory;
+        this.baseName = hotName.endsWith(".txt") ? hotName.substring(0, hotName.length() - 4) : hotName;
+        this.hotFile = new File(directory, hotName);
+        this.writer = writer;
+        this.segmentBytes = segmentBytes;
+        this.monthly = monthly;
+    }
+
+    public File getHotFile() {
+        return hotFile;
+    }
+
+    /**
+     * Finishes archiving segments left behind by an interrupted run, reads
+     * the cold segment indexes and sizes up the hot file. Call before loading.
+     */
+    public synchronized void recover() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(baseName + "-"));
+        List<Integer> pending = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                int number = numberOf(file.getName());
+                if (number < 0) continue;
+                nextNumber = Math.max(nextNumber, number + 1);
+                if (file.getName().endsWith(".txt")) pending.add(number);
+            }
+        }
+        Collections.sort(pending);
+        for (int number : pending) {
+            if (indexFile(number).exists()) {
+                plainFile(number).delete();  // archived before the crash, only the cleanup was lost
+            } else {
+                archive(number);
+            }
+        }
+
+        segments.clear();
+        for (int number = 1; number < nextNumber; number++) {
+            Segment segment = readIndex(number);
+            if (segment != null) segments.add(segment);
+        }
+
+        hotBytes = hotFile.length();
+        hotMonth = -1;
+        if (monthly && hotBytes > 0) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(hotFile), StandardCharsets.UTF_8))) {
+                String first = in.readLine();
+                int day = first == null ? Integer.MIN_VALUE : dayOf(first);
+                if (day != Integer.MIN_VALUE) hotMonth = monthOf(LocalDate.ofEpochDay(day));
+            } catch (IOException e) {
+                System.out.println("Error reading " + hotFile.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Queues a record line for the hot file, rotating first or after as the policy requires
+    public synchronized long append(String line, LocalDate date) {
+        int month = monthOf(date);
+        if (monthly && hotMonth >= 0 && month != hotMonth) {
+            rotate();
+        }
+        long sequence = writer.append(hotFile.getPath(), line);
+        hotBytes += line.length() + System.lineSeparator().length();
+        if (hotMonth < 0) hotMonth = month;
+        if (hotBytes >= segmentBytes) {
+            rotate();
+        }
+        return sequence;
+    }
+
+    // Seals the hot file as the next numbered segment and archives it in the background
+    public synchronized void rotate() {
+        if (hotBytes == 0) return;
+        int number = nextNumber++;
+        long sequence = writer.rotate(hotFile.getPath(), plainFile(number).getPath());
+        hotBytes = 0;
+        hotMonth = -1;
+        archiver.execute(() -> {
+            try {
+                writer.awaitDurable(sequence);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (UncheckedIOException e) {
+                // The sealed file stays as plain text; recover archives it on the next start
+                System.out.println("Not archiving segment " + number + ": " + e.getMessage());
+                return;
+            }
+            archive(number);
+            Segment segment = readIndex(number);
+            if (segment != null) {
+                synchronized (this) {
+                    segments.add(segment);
+                }
+            }
+        });
+    }
+
+    // Waits for segments sealed so far to finish archiving
+    public void awaitArchived() throws InterruptedException {
+        try {
+            archiver.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Cold segments in log order
+    public synchronized List<Segment> segments() {
+        return new ArrayList<>(segments);
+    }
+
+    public static int countRecords(List<Segment> segments) {
+        int count = 0;
+        for (Segment segment : segments) {
+            count += segment.count;
+        }
+        return count;
+    }
+
+    /**
+     * Parses the records dated from..to (inclusive, as epoch days) in the
+     * given cold segments. Segments and blocks outside the range are never
+     * opened. Lines that fail to parse are skipped.
+     */
+    public <T> List<T> read(List<Segment> cold, int fromDay, int toDay, ParallelDataLoader.LineParser<T> parser) {
+        return read(cold, fromDay, toDay, block -> true, parser);
+    }
+
+    /**
+     * Parses the lines of blocks that may hold records of this plate. The
+     * parser still has to check each line, since a filter can say yes for a
+     * block without the plate.
+     */
+    public <T> List<T> readPlate(List<Segment> cold, int plateKey, ParallelDataLoader.LineParser<T> parser) {
+        return read(cold, Integer.MIN_VALUE, Integer.MAX_VALUE, block -> block.mayHavePlate(plateKey), parser);
+    }
+
+    // As readPlate, for blocks that may hold records of any of these customers
+    public <T> List<T> readCustomers(List<Segment> cold, Collection<String> customerIds,
+                                     ParallelDataLoader.LineParser<T> parser) {
+        if (customerIds.isEmpty()) return new ArrayList<>();
+        if (customerIds.size() > MAX_FILTERED_CUSTOMERS) {
+            return read(cold, Integer.MIN_VALUE, Integer.MAX_VALUE, parser);
+        }
+        int[] keys = new int[customerIds.size()];
+        int n = 0;
+        for (String id : customerIds) {
+            keys[n++] = KeyFilter.keyOf(id);
+        }
+        return read(cold, Integer.MIN_VALUE, Integer.MAX_VALUE, block -> {
+            for (int key : keys) {
+                if (block.mayHaveCustomer(key)) return true;
+            }
+            return false;
+        }, parser);
+    }
+
+    private <T> List<T> read(List<Segment> cold, int fromDay, int toDay, Predicate<Block> mayHold,
+                             ParallelDataLoader.LineParser<T> parser) {
+        List<T> rows = new ArrayList<>();
+        for (Segment segment : cold) {
+            if (!segment.overlaps(fromDay, toDay)) continue;
+            try (RandomAccessFile file = new RandomAccessFile(segment.file, "r")) {
+                for (Block block : segment.blocks) {
+                    if (block.count == 0 || block.minDay > toDay || block.maxDay < fromDay) continue;
+                    if (!mayHold.test(block)) continue;
+                    byte[] compressed = new byte[block.length];
+                    file.seek(block.offset);
+                    file.readFully(compressed);
+                    parse(ByteBuffer.wrap(inflate(compressed)), fromDay, toDay, parser, rows);
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading " + segment.file.getName() + ": " + e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    // Same as above for record lines already in memory or mapped, such as a pinned part of the hot file
+    public static <T> List<T> read(ByteBuffer lines, int fromDay, int toDay, ParallelDataLoader.LineParser<T> parser) {
+        List<T> rows = new ArrayList<>();
+        parse(lines.duplicate(), fromDay, toDay, parser, rows);
+        return rows;
+    }
+
+    /**
+     * Copies the first length bytes of the hot file to a side file
+     * (rental_records.pinned) and maps the copy. The hot file itself is never
+     * mapped: on Windows a mapped file can't be renamed, so rotation would
+     * fail for as long as the mapping lived. The copy is never renamed, and
+     * the next start overwrites it.
+     */
+    public ByteBuffer pinHot(long length) throws IOException {
+        File pinned = new File(directory, baseName + ".pinned");
+        try (FileChannel in = FileChannel.open(hotFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(pinned.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = Math.min(length, in.size());
+            for (long copied = 0; copied < size; ) {
+                copied += in.transferTo(copied, size - copied, out);
+            }
+            return out.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private void archive(int number) {
+        File plain = plainFile(number);
+        File archive = archiveFile(number);
+        File archiveTemp = new File(archive.getPath() + ".tmp");
+        File index = indexFile(number);
+        File indexTemp = new File(index.getPath() + ".tmp");
+        List<String> blockLines = new ArrayList<>();
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        int count = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                 new FileInputStream(plain), StandardCharsets.UTF_8));
+             FileOutputStream out = new FileOutputStream(archiveTemp)) {
+            long offset = 0;
+            String line = in.readLine();
+            while (line != null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                int blockMin = Integer.MAX_VALUE;
+                int blockMax = Integer.MIN_VALUE;
+                int blockCount = 0;
+                IntList plates = new IntList();
+                IntList customers = new IntList();
+                try (Writer block = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+                    for (; line != null && blockCount < BLOCK_RECORDS; line = in.readLine()) {
+                        if (line.isEmpty()) continue;
+                        block.write(line);
+                        block.write('\n');
+                        blockCount++;
+                        String[] parts = line.split(",");
+                        if (parts.length != 5) continue;
+                        int plateKey = PlateCodec.encode(parts[1]);
+                        if (plateKey != PlateCodec.INVALID) plates.add(plateKey);
+                        customers.add(KeyFilter.keyOf(parts[2]));
+                        int day = dayOf(parts);
+                        if (day == Integer.MIN_VALUE) continue;
+                        blockMin = Math.min(blockMin, day);
+                        blockMax = Math.max(blockMax, day);
+                    }
+                }
+                if (blockCount == 0) break;
+                out.write(bytes.toByteArray());
+                blockLines.add("BLOCK," + offset + "," + bytes.size() + "," + formatDay(blockMin) + ","
+                               + formatDay(blockMax) + "," + blockCount + ","
+                               + KeyFilter.of(plates.toArray()).encode() + ","
+                               + KeyFilter.of(customers.toArray()).encode());
+                offset += bytes.size();
+                minDay = Math.min(minDay, blockMin);
+                maxDay = Math.max(maxDay, blockMax);
+                count += blockCount;
+            }
+            out.getChannel().force(true);
+        } catch (IOException e) {
+            System.out.println("Error archiving " + plain.getName() + ": " + e.getMessage());
+            archiveTemp.delete();
+            return;
+        }
+
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(indexTemp), StandardCharsets.UTF_8))) {
+            out.println(INDEX_VERSION);
+            out.println("RANGE," + formatDay(minDay) + "," + formatDay(maxDay) + "," + count);
+            for (String blockLine : blockLines) {
+                out.println(blockLine);
+            }
+        } catch (IOException e) {
+            System.out.println("Error indexing " + plain.getName() + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(archiveTemp.toPath(), archive.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTemp.toPath(), index.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            plain.delete();
+        } catch (IOException e) {
+            System.out.println("Error archiving " + plain.getName() + ": " + e.getMessage());
+        }
+        System.out.println("Archived " + count + " rental records to " + archive.getName());
+    }
+
+    // Returns null if the segment has no index yet or the index can't be read
+    private Segment readIndex(int number) {
+        File index = indexFile(number);
+        if (!index.exists()) return null;
+        try {
+            List<String> lines = Files.readAllLines(index.toPath(), StandardCharsets.UTF_8);
+            boolean filtered = lines.size() >= 2 && lines.get(0).equals(INDEX_VERSION);
+            if (lines.size() < 2 || !(filtered || lines.get(0).equals(UNFILTERED_INDEX_VERSION))) {
+                System.out.println("Ignoring unreadable index " + index.getName());
+                return null;
+            }
+            String[] range = lines.get(1).split(",");
+            List<Block> blocks = new ArrayList<>();
+            for (String line : lines.subList(2, lines.size())) {
+                String[] parts = line.split(",");
+                blocks.add(new Block(Long.parseLong(parts[1]), Integer.parseInt(parts[2]),
+                                     parseDay(parts[3]), parseDay(parts[4]), Integer.parseInt(parts[5]),
+                                     filtered ? KeyFilter.decode(parts[6]) : null,
+                                     filtered ? KeyFilter.decode(parts[7]) : null));
+            }
+            return new Segment(number, archiveFile(number), parseDay(range[1]), parseDay(range[2]),
+                               Integer.parseInt(range[3]), blocks);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error reading index " + index.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static <T> void parse(ByteBuffer lines, int fromDay, int toDay,
+                                  ParallelDataLoader.LineParser<T> parser, List<T> rows) {
+        boolean filtered = fromDay != Integer.MIN_VALUE || toDay != Integer.MAX_VALUE;
+        LineCursor cursor = new LineCursor(lines);
+        while (cursor.nextLine()) {
+            try {
+                if (filtered) {
+                    int day = cursor.fieldCount() == 5 ? skipToDay(cursor) : Integer.MIN_VALUE;
+                    cursor.rewind();
+                    if (day < fromDay || day > toDay) continue;
+                }
+                T row = parser.parse(cursor);
+                if (row != null) rows.add(row);
+            } catch (RuntimeException e) {
+                // malformed lines were quarantined when they were loaded from the hot file
+            }
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static int skipToDay(LineCursor cursor) {
+        cursor.nextString();
+        cursor.nextString();
+        cursor.nextString();
+        return cursor.nextEpochDay();
+    }
+
+    // Epoch day of a rental_records.txt line, or Integer.MIN_VALUE if it has none
+    private static int dayOf(String line) {
+        return dayOf(line.split(","));
+    }
+
+    private static int dayOf(String[] parts) {
+        if (parts.length != 5) return Integer.MIN_VALUE;
+        try {
+            return (int) LocalDate.parse(parts[3]).toEpochDay();
+        } catch (RuntimeException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private static int monthOf(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    // A block with no dated lines keeps an empty range so date queries skip it
+    private static String formatDay(int day) {
+        return day == Integer.MAX_VALUE || day == Integer.MIN_VALUE ? "-" : LocalDate.ofEpochDay(day).toString();
+    }
+
+    private static int parseDay(String text) {
+        return text.equals("-") ? Integer.MIN_VALUE : (int) LocalDate.parse(text).toEpochDay();
+    }
+
+    private int numberOf(String name) {
+        String rest = name.substring(baseName.length() + 1);
+        int dot = rest.indexOf('.');
+        if (dot <= 0) return -1;
+        try {
+            return Integer.parseInt(rest.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private File plainFile(int number) {
+        return new File(directory, String.format("%s-%06d.txt", baseName, number));
+    }
+
+    private File archiveFile(int number) {
+        return new File(directory, String.format("%s-%06d.txt.gz", baseName, number));
+    }
+
+    private File indexFile(int number) {
+        return new File(directory, String.format("%s-%06d.idx", baseName, number));
+    }
+}
@@ -0,0 +1,56 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Window shown while RentalSystem loads, with the current stage and a bar
+ * for every data file. As a StartupListener it is called from the loading
+ * threads and hands each update to the EDT.
+ */
+public class StartupSplash extends JWindow implements RentalSystem.StartupListener {
+    private static final long serialVersionUID = 1L;
+
+    private final JLabel stageLabel = new JLabel("Starting...");
+    private final JPanel filePanel = new JPanel(new GridLayout(0, 1, 4, 4));
+    private final Map<String, JProgressBar> bars = new LinkedHashMap<>();
+
+    public StartupSplash() {
+        JPanel content = new JPanel(new BorderLayout(10, 10));
+        content.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(Color.GRAY),
+            BorderFactory.createEmptyBorder(15, 15, 15, 15)));
+        JLabel title = new JLabel("Vehicle Rental System");
+        title.setFont(title.getFont().deriveFont(Font.BOLD, 16f));
+        content.add(title, BorderLayout.NORTH);
+        content.add(filePanel, BorderLayout.CENTER);
+        content.add(stageLabel, BorderLayout.SOUTH);
+        setContentPane(content);
+        setSize(420, 220);
+        setLocationRelativeTo(null);
+    }
+
+    @Override
+    public void stage(String description) {
+        SwingUtilities.invokeLater(() -> stageLabel.setText(description + "..."));
+    }
+
+    @Override
+    public void fileProgress(String file, long bytesDone, long bytesTotal) {
+        SwingUtilities.invokeLater(() -> {
+            JProgressBar bar = bars.get(file);
+            if (bar == null) {
+                bar = new JProgressBar(0, 1000);
+                bar.setStringPainted(true);
+                bars.put(file, bar);
+                filePanel.add(bar);
+                filePanel.revalidate();
+            }
+            // A missing or empty file counts as done
+            int permille = bytesTotal == 0 ? 1000 : (int) (bytesDone * 1000 / bytesTotal);
+            // Chunks finish on several threads, so updates can arrive slightly out of order
+            bar.setValue(Math.max(bar.getValue(), permille));
+            bar.setString(file + "  " + bar.getValue() / 10 + "%");
+        });
+    }
+}
@@ -0,0 +1,137 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers "which vehicles were rented at the end of this day" from the
+ * RENT/RETURN stream in a RentalHistory. Replaying the stream from the start
+ * would cost a pass over years of records per question, so the timeline
+ * keeps checkpoints of the rented plates at day boundaries and a query
+ * replays only the records between the nearest checkpoint and its date.
+ *
+ * Checkpoints are laid down by the queries themselves as they replay past
+ * the newest one, at least every checkpointRecords records and never more
+ * often than the checkpoint's own size, so together they take no more
+ * than four bytes per record. A record added with a date at or before a
+ * checkpoint makes it stale; recordAdded marks that and the next query
+ * drops the stale ones before reading.
+ */
+public class StatusTimeline {
+    private final RentalHistory history;
+    private final int checkpointRecords;
+    // Oldest record date added since the last query, as an epoch day
+    private final AtomicInteger dirtyFrom = new AtomicInteger(Integer.MAX_VALUE);
+    // Guarded by this; in day order
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+
+    // Plate keys rented once every record dated on or before day is applied, sorted
+    private static final class Checkpoint {
+        final int day;
+        final int[] rented;
+
+        Checkpoint(int day, int[] rented) {
+            this.day = day;
+            this.rented = rented;
+        }
+    }
+
+    public StatusTimeline(RentalHistory history, int checkpointRecords) {
+        this.history = history;
+        this.checkpointRecords = Math.max(1, checkpointRecords);
+    }
+
+    // Call after history.addRecord; never blocks, so it is safe on the rent and return path
+    public void recordAdded(LocalDate date) {
+        int day = (int) date.toEpochDay();
+        dirtyFrom.accumulateAndGet(day, Math::min);
+    }
+
+    // Plate keys of the vehicles rented at the end of this day, sorted
+    public synchronized int[] rentedOn(LocalDate date) {
+        int day = (int) date.toEpochDay();
+        dropStale();
+        int index = floor(day);
+        Checkpoint base = index < 0 ? null : checkpoints.get(index);
+        // Only a replay past the newest checkpoint has anything new to record
+        boolean extending = index == checkpoints.size() - 1;
+
+        if (base != null && base.day == day) {
+            return base.rented.clone();
+        }
+        Set<Integer> rented = new HashSet<>();
+        if (base != null) {
+            for (int plateKey : base.rented) {
+                rented.add(plateKey);
+            }
+        }
+        LocalDate from = LocalDate.ofEpochDay(base == null ? Integer.MIN_VALUE : base.day + 1);
+        Iterator<RentalRecord> records = history.getRecordsBetween(from, date).iterator();
+        int replayed = 0;
+        int lastDay = Integer.MIN_VALUE;
+        while (records.hasNext()) {
+            RentalRecord record = records.next();
+            int recordDay = (int) record.getRecordDate().toEpochDay();
+            if (extending && recordDay != lastDay && replayed >= Math.max(checkpointRecords, rented.size())) {
+                checkpoints.add(new Checkpoint(lastDay, sorted(rented)));
+                replayed = 0;
+            }
+            int plateKey = record.getVehicle().getPlateKey();
+            if ("RENT".equals(record.getRecordType())) {
+                rented.add(plateKey);
+            } else if ("RETURN".equals(record.getRecordType())) {
+                rented.remove(plateKey);
+            }
+            replayed++;
+            lastDay = recordDay;
+        }
+        return sorted(rented);
+    }
+
+    public boolean isRentedOn(int plateKey, LocalDate date) {
+        return Arrays.binarySearch(rentedOn(date), plateKey) >= 0;
+    }
+
+    public synchronized int checkpointCount() {
+        return checkpoints.size();
+    }
+
+    // Caller holds the monitor
+    private void dropStale() {
+        int dirty = dirtyFrom.getAndSet(Integer.MAX_VALUE);
+        int keep = checkpoints.size();
+        while (keep > 0 && checkpoints.get(keep - 1).day >= dirty) {
+            keep--;
+        }
+        checkpoints.subList(keep, checkpoints.size()).clear();
+    }
+
+    // Index of the last checkpoint on or before day, or -1
+    private int floor(int day) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (checkpoints.get(mid).day <= day) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static int[] sorted(Set<Integer> plateKeys) {
+        int[] result = new int[plateKeys.size()];
+        int i = 0;
+        for (int plateKey : plateKeys) {
+            result[i++] = plateKey;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+}
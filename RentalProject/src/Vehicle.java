@@ -1,9 +1,22 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
 public abstract class Vehicle {
     private String licensePlate;
+    private int plateKey = PlateCodec.INVALID;
     private String make;
     private String model;
     private int year;
-    private VehicleStatus status;
+    private final AtomicReference<VehicleStatus> status = new AtomicReference<>(VehicleStatus.Available);
+    private volatile StatusListener statusListener;
+
+    // Makes and models repeat across the fleet, so every vehicle shares one instance per value
+    static final NameDictionary MAKES = new NameDictionary();
+    static final NameDictionary MODELS = new NameDictionary();
 
     public enum VehicleStatus { 
         Available, 
@@ -13,11 +26,34 @@ public abstract class Vehicle {
         OutOfService 
     }
 
+    public interface StatusListener {
+        void statusChanged(Vehicle vehicle, VehicleStatus from, VehicleStatus to);
+    }
+
+    // Legal lifecycle moves. Held is a short reservation: a customer hold
+    // waiting to be confirmed, or a rent/return while its record is written.
+    private static final Map<VehicleStatus, Set<VehicleStatus>> TRANSITIONS = new EnumMap<>(VehicleStatus.class);
+    static {
+        allow(VehicleStatus.Available, VehicleStatus.Held, VehicleStatus.Rented,
+              VehicleStatus.UnderMaintenance, VehicleStatus.OutOfService);
+        allow(VehicleStatus.Held, VehicleStatus.Available, VehicleStatus.Rented);
+        allow(VehicleStatus.Rented, VehicleStatus.Held, VehicleStatus.Available);
+        allow(VehicleStatus.UnderMaintenance, VehicleStatus.Available, VehicleStatus.OutOfService);
+        allow(VehicleStatus.OutOfService, VehicleStatus.UnderMaintenance, VehicleStatus.Available);
+    }
+
+    private static void allow(VehicleStatus from, VehicleStatus... to) {
+        TRANSITIONS.put(from, Collections.unmodifiableSet(EnumSet.of(to[0], to)));
+    }
+
+    public static boolean canTransition(VehicleStatus from, VehicleStatus to) {
+        return TRANSITIONS.get(from).contains(to);
+    }
+
     public Vehicle(String make, String model, int year) {
-        this.make = capitalize(make);
-        this.model = capitalize(model);
+        this.make = MAKES.canonical(make);
+        this.model = MODELS.canonical(model);
         this.year = year;
-        this.status = VehicleStatus.Available;
         this.licensePlate = null;
     }
 
@@ -25,38 +61,61 @@ public abstract class Vehicle {
         this(null, null, 0);
     }
     
-    private String capitalize(String input) {
-        if (input == null || input.trim().isEmpty()) {
-            return null;
-        }
-        String trimmed = input.trim();
-        return trimmed.substring(0, 1).toUpperCase() + 
-               trimmed.substring(1).toLowerCase();
-    }
-
     public void setLicensePlate(String plate) {
-        if (!isValidPlate(plate)) {
+        // Format: exactly 3 letters followed by exactly 3 numbers
+        int key = PlateCodec.encode(plate);
+        if (key == PlateCodec.INVALID) {
             throw new IllegalArgumentException("Invalid license plate format. Must be 3 letters followed by 3 numbers.");
         }
-        this.licensePlate = plate.toUpperCase();
+        this.plateKey = key;
+        this.licensePlate = PlateCodec.decode(key);
     }
 
-    private boolean isValidPlate(String plate) {
-        if (plate == null || plate.isEmpty()) {
+    /**
+     * Atomically moves from one status to another. Returns false if the
+     * vehicle is no longer in the expected status (another thread won).
+     * @throws IllegalStateException if the move is not in the transition table
+     */
+    public boolean tryTransition(VehicleStatus from, VehicleStatus to) {
+        if (!canTransition(from, to)) {
+            throw new IllegalStateException("Illegal status transition: " + from + " -> " + to);
+        }
+        if (!status.compareAndSet(from, to)) {
             return false;
         }
-        // Format: exactly 3 letters followed by exactly 3 numbers
-        return plate.toUpperCase().matches("^[A-Z]{3}[0-9]{3}$");
+        StatusListener listener = statusListener;
+        if (listener != null) {
+            listener.statusChanged(this, from, to);
+        }
+        return true;
     }
 
     public void setStatus(VehicleStatus status) {
-        this.status = status;
+        while (true) {
+            VehicleStatus current = this.status.get();
+            if (current == status) return;
+            if (tryTransition(current, status)) return;
+        }
+    }
+
+    // Notified after every successful transition; set when the vehicle is registered
+    void setStatusListener(StatusListener listener) {
+        this.statusListener = listener;
+    }
+
+    // Bypasses the transition table and listener; only for restoring persisted state
+    void restoreStatus(VehicleStatus status) {
+        this.status.set(status);
     }
 
     public String getLicensePlate() { 
         return licensePlate; 
     }
 
+    public int getPlateKey() {
+        return plateKey;
+    }
+
     public String getMake() { 
         return make; 
     }
@@ -70,17 +129,17 @@ public abstract class Vehicle {
     }
 
     public VehicleStatus getStatus() { 
-        return status; 
+        return status.get(); 
     }
 
     public String getInfo() {
-        return "| " + licensePlate + " | " + make + " | " + model + " | " + year + " | " + status + " |";
+        return "| " + licensePlate + " | " + make + " | " + model + " | " + year + " | " + getStatus() + " |";
     }
     
     @Override
     public String toString() {
         return getClass().getSimpleName() + " [Plate: " + licensePlate + 
                ", Make: " + make + ", Model: " + model + 
-               ", Year: " + year + ", Status: " + status + "]";
+               ", Year: " + year + ", Status: " + getStatus() + "]";
     }
 }
\ No newline at end of file
@@ -0,0 +1,308 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads and writes one vehicle type, as a vehicles.txt line or as a compact
+ * binary record. Every line starts "plate,make,model,year,Type" and every
+ * binary record starts with the type's tag byte, plate key, make, model and
+ * year; the codec handles whatever the type adds after that.
+ *
+ * Codecs live in a registry keyed by type name, tag and class, so finding
+ * the codec for a line, record or vehicle is a single lookup. A new vehicle
+ * type persists once its codec is registered, with no change elsewhere.
+ * Encoding appends to the caller's StringBuilder or ByteBuffer; numbers are
+ * never turned into Strings on the way.
+ */
+public abstract class VehicleCodec<V extends Vehicle> {
+    private static final Map<String, VehicleCodec<?>> BY_NAME = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, VehicleCodec<?>> BY_CLASS = new ConcurrentHashMap<>();
+    private static volatile VehicleCodec<?>[] byTag = new VehicleCodec<?>[256];
+    private static volatile String[] names = new String[0];
+    private static final ThreadLocal<StringBuilder> TEXT = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    static {
+        register(new CarCodec());
+        register(new SportCarCodec());
+        register(new MinibusCodec());
+        register(new PickupTruckCodec());
+    }
+
+    private final Class<V> type;
+    private final String name;
+    private final int tag;
+    private final String displayName;
+
+    // name is the type field in text, tag (0-255) the first byte of a binary record
+    protected VehicleCodec(Class<V> type, String name, int tag, String displayName) {
+        if (tag < 0 || tag > 255) throw new IllegalArgumentException("Tag must fit in a byte: " + tag);
+        this.type = type;
+        this.name = name;
+        this.tag = tag;
+        this.displayName = displayName;
+    }
+
+    // Appends the type's own fields, each preceded by a comma
+    protected abstract void appendFields(V vehicle, StringBuilder out);
+
+    protected abstract V readFields(String make, String model, int year, LineCursor in);
+
+    protected abstract void putFields(V vehicle, ByteBuffer out);
+
+    protected abstract V getFields(String make, String model, int year, ByteBuffer in);
+
+    public static synchronized void register(VehicleCodec<?> codec) {
+        if (byTag[codec.tag] != null || BY_NAME.containsKey(codec.name)) {
+            throw new IllegalArgumentException("Codec already registered for " + codec.name + " / tag " + codec.tag);
+        }
+        VehicleCodec<?>[] tags = byTag.clone();
+        tags[codec.tag] = codec;
+        String[] grown = Arrays.copyOf(names, names.length + 1);
+        grown[names.length] = codec.name;
+        BY_NAME.put(codec.name, codec);
+        BY_CLASS.put(codec.type, codec);
+        byTag = tags;
+        names = grown;
+    }
+
+    // The codec for this exact class, else for its nearest registered superclass; null if none
+    @SuppressWarnings("unchecked")
+    public static <T extends Vehicle> VehicleCodec<? super T> of(T vehicle) {
+        VehicleCodec<?> codec = BY_CLASS.get(vehicle.getClass());
+        if (codec == null) {
+            for (Class<?> c = vehicle.getClass().getSuperclass(); c != Vehicle.class && codec == null; c = c.getSuperclass()) {
+                codec = BY_CLASS.get(c);
+            }
+            if (codec != null) BY_CLASS.putIfAbsent(vehicle.getClass(), codec);
+        }
+        return (VehicleCodec<? super T>) codec;
+    }
+
+    public static String displayName(Vehicle vehicle) {
+        VehicleCodec<?> codec = of(vehicle);
+        return codec == null ? "Unknown" : codec.displayName;
+    }
+
+    // One vehicles.txt line, without the newline
+    public static String toText(Vehicle vehicle) {
+        StringBuilder out = TEXT.get();
+        out.setLength(0);
+        appendText(vehicle, out);
+        return out.toString();
+    }
+
+    public static void appendText(Vehicle vehicle, StringBuilder out) {
+        VehicleCodec<? super Vehicle> codec = of(vehicle);
+        out.append(vehicle.getLicensePlate()).append(',')
+           .append(vehicle.getMake()).append(',')
+           .append(vehicle.getModel()).append(',')
+           .append(vehicle.getYear()).append(',');
+        if (codec == null) {
+            out.append("Unknown");
+            return;
+        }
+        out.append(codec.name);
+        codec.appendFields(vehicle, out);
+    }
+
+    /**
+     * Reads the vehicle from the cursor's current field onwards. Returns null
+     * for an unknown type; missing or malformed fields throw.
+     */
+    public static Vehicle parse(LineCursor in) {
+        String plate = in.nextString();
+        String make = in.nextName(Vehicle.MAKES);
+        String model = in.nextName(Vehicle.MODELS);
+        int year = in.nextInt();
+        VehicleCodec<?> codec = BY_NAME.get(in.nextKnown(names));
+        if (codec == null) return null;
+        Vehicle vehicle = codec.readFields(make, model, year, in);
+        vehicle.setLicensePlate(plate);
+        return vehicle;
+    }
+
+    // Throws BufferOverflowException if the record doesn't fit
+    public static void write(Vehicle vehicle, ByteBuffer out) {
+        VehicleCodec<? super Vehicle> codec = of(vehicle);
+        if (codec == null) {
+            throw new IllegalArgumentException("No codec for " + vehicle.getClass().getSimpleName());
+        }
+        out.put((byte) codec.tag);
+        out.putInt(vehicle.getPlateKey());
+        putString(vehicle.getMake(), out);
+        putString(vehicle.getModel(), out);
+        out.putInt(vehicle.getYear());
+        codec.putFields(vehicle, out);
+    }
+
+    public static Vehicle read(ByteBuffer in) {
+        int tag = in.get() & 0xFF;
+        VehicleCodec<?> codec = byTag[tag];
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown vehicle tag " + tag);
+        }
+        int plateKey = in.getInt();
+        String make = getString(in);
+        String model = getString(in);
+        int year = in.getInt();
+        Vehicle vehicle = codec.getFields(make, model, year, in);
+        if (plateKey != PlateCodec.INVALID) {
+            vehicle.setLicensePlate(PlateCodec.decode(plateKey));
+        }
+        return vehicle;
+    }
+
+    // Length-prefixed modified UTF-8, as in DataOutput.writeUTF; -1 for null
+    private static void putString(String value, ByteBuffer out) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        int lengthAt = out.position();
+        out.putShort((short) 0);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 1 && c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else {
+                out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        int length = out.position() - lengthAt - 2;
+        if (length > Short.MAX_VALUE) throw new IllegalArgumentException("String too long to encode");
+        out.putShort(lengthAt, (short) length);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) return null;
+        char[] chars = new char[length];
+        int n = 0;
+        for (int end = in.position() + length; in.position() < end; ) {
+            int b = in.get() & 0xFF;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[n++] = (char) ((b & 0x1F) << 6 | in.get() & 0x3F);
+            } else {
+                chars[n++] = (char) ((b & 0x0F) << 12 | (in.get() & 0x3F) << 6 | in.get() & 0x3F);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static class CarCodec extends VehicleCodec<Car> {
+        CarCodec() {
+            super(Car.class, "Car", 1, "Car");
+        }
+
+        @Override
+        protected void appendFields(Car car, StringBuilder out) {
+            out.append(',').append(car.getNumberOfSeats());
+        }
+
+        @Override
+        protected Car readFields(String make, String model, int year, LineCursor in) {
+            return new Car(make, model, year, in.nextInt());
+        }
+
+        @Override
+        protected void putFields(Car car, ByteBuffer out) {
+            out.putInt(car.getNumberOfSeats());
+        }
+
+        @Override
+        protected Car getFields(String make, String model, int year, ByteBuffer in) {
+            return new Car(make, model, year, in.getInt());
+        }
+    }
+
+    private static class SportCarCodec extends VehicleCodec<SportCar> {
+        SportCarCodec() {
+            super(SportCar.class, "SportCar", 2, "Sport Car");
+        }
+
+        @Override
+        protected void appendFields(SportCar car, StringBuilder out) {
+            out.append(',').append(car.getNumberOfSeats())
+               .append(',').append(car.getHorsepower())
+               .append(',').append(car.hasTurbo());
+        }
+
+        @Override
+        protected SportCar readFields(String make, String model, int year, LineCursor in) {
+            int seats = in.nextInt();
+            int horsepower = in.nextInt();
+            return new SportCar(make, model, year, seats, horsepower, in.nextBoolean());
+        }
+
+        @Override
+        protected void putFields(SportCar car, ByteBuffer out) {
+            out.putInt(car.getNumberOfSeats()).putInt(car.getHorsepower()).put((byte) (car.hasTurbo() ? 1 : 0));
+        }
+
+        @Override
+        protected SportCar getFields(String make, String model, int year, ByteBuffer in) {
+            int seats = in.getInt();
+            int horsepower = in.getInt();
+            return new SportCar(make, model, year, seats, horsepower, in.get() != 0);
+        }
+    }
+
+    private static class MinibusCodec extends VehicleCodec<Minibus> {
+        MinibusCodec() {
+            super(Minibus.class, "Minibus", 3, "Minibus");
+        }
+
+        @Override
+        protected void appendFields(Minibus bus, StringBuilder out) {
+            out.append(',').append(bus.isAccessible());
+        }
+
+        @Override
+        protected Minibus readFields(String make, String model, int year, LineCursor in) {
+            return new Minibus(make, model, year, in.nextBoolean());
+        }
+
+        @Override
+        protected void putFields(Minibus bus, ByteBuffer out) {
+            out.put((byte) (bus.isAccessible() ? 1 : 0));
+        }
+
+        @Override
+        protected Minibus getFields(String make, String model, int year, ByteBuffer in) {
+            return new Minibus(make, model, year, in.get() != 0);
+        }
+    }
+
+    private static class PickupTruckCodec extends VehicleCodec<PickupTruck> {
+        PickupTruckCodec() {
+            super(PickupTruck.class, "PickupTruck", 4, "Pickup Truck");
+        }
+
+        @Override
+        protected void appendFields(PickupTruck truck, StringBuilder out) {
+            out.append(',').append(truck.getCargoSize()).append(',').append(truck.hasTrailer());
+        }
+
+        @Override
+        protected PickupTruck readFields(String make, String model, int year, LineCursor in) {
+            double cargoSize = in.nextDouble();
+            return new PickupTruck(make, model, year, cargoSize, in.nextBoolean());
+        }
+
+        @Override
+        protected void putFields(PickupTruck truck, ByteBuffer out) {
+            out.putDouble(truck.getCargoSize()).put((byte) (truck.hasTrailer() ? 1 : 0));
+        }
+
+        @Override
+        protected PickupTruck getFields(String make, String model, int year, ByteBuffer in) {
+            double cargoSize = in.getDouble();
+            return new PickupTruck(make, model, year, cargoSize, in.get() != 0);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Locale;
+
+/**
+ * Search criteria for VehicleSearchIndex. Unset criteria match everything;
+ * set ones must all match. Make and model compare case-insensitively.
+ *
+ *   new VehicleQuery().type(Car.class).minSeats(7).yearFrom(2020)
+ */
+public class VehicleQuery {
+    Class<? extends Vehicle> type;
+    String make;
+    String model;
+    int minYear = Integer.MIN_VALUE;
+    int maxYear = Integer.MAX_VALUE;
+    int minSeats = Integer.MIN_VALUE;
+    double minCargo = Double.NEGATIVE_INFINITY;
+    Boolean accessible;
+    Boolean trailer;
+    Vehicle.VehicleStatus status;
+
+    // Subclasses match too, so Car.class includes sport cars
+    public VehicleQuery type(Class<? extends Vehicle> type) {
+        this.type = type;
+        return this;
+    }
+
+    public VehicleQuery make(String make) {
+        this.make = make.trim().toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public VehicleQuery model(String model) {
+        this.model = model.trim().toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public VehicleQuery yearFrom(int year) {
+        this.minYear = year;
+        return this;
+    }
+
+    public VehicleQuery yearTo(int year) {
+        this.maxYear = year;
+        return this;
+    }
+
+    // Implies a Car
+    public VehicleQuery minSeats(int seats) {
+        this.minSeats = seats;
+        return this;
+    }
+
+    // Implies a PickupTruck
+    public VehicleQuery minCargo(double cargoSize) {
+        this.minCargo = cargoSize;
+        return this;
+    }
+
+    // Implies a Minibus
+    public VehicleQuery accessible(boolean accessible) {
+        this.accessible = accessible;
+        return this;
+    }
+
+    // Implies a PickupTruck
+    public VehicleQuery trailer(boolean trailer) {
+        this.trailer = trailer;
+        return this;
+    }
+
+    // Checked against the live status, so it is never stale
+    public VehicleQuery status(Vehicle.VehicleStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public boolean matches(Vehicle vehicle) {
+        if (type != null && !type.isInstance(vehicle)) return false;
+        if (make != null && !make.equalsIgnoreCase(String.valueOf(vehicle.getMake()))) return false;
+        if (model != null && !model.equalsIgnoreCase(String.valueOf(vehicle.getModel()))) return false;
+        if (vehicle.getYear() < minYear || vehicle.getYear() > maxYear) return false;
+        if (minSeats != Integer.MIN_VALUE
+                && !(vehicle instanceof Car && ((Car) vehicle).getNumberOfSeats() >= minSeats)) return false;
+        if (accessible != null
+                && !(vehicle instanceof Minibus && ((Minibus) vehicle).isAccessible() == accessible)) return false;
+        if (minCargo != Double.NEGATIVE_INFINITY
+                && !(vehicle instanceof PickupTruck && ((PickupTruck) vehicle).getCargoSize() >= minCargo)) return false;
+        if (trailer != null
+                && !(vehicle instanceof PickupTruck && ((PickupTruck) vehicle).hasTrailer() == trailer)) return false;
+        return status == null || vehicle.getStatus() == status;
+    }
+}
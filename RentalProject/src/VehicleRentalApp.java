@@ -1,3 +1,4 @@
+import java.util.List;
 import java.util.Scanner;
 import java.time.LocalDate;
 
@@ -13,6 +14,7 @@ public class VehicleRentalApp {
                               "4: Return Vehicle\n" + 
                               "5: Display Available Vehicles\n" + 
                               "6: Show Rental History\n" + 
+                              "7: Find Customer\n" + 
                               "0: Exit\n");
             int choice = scanner.nextInt();
             scanner.nextLine();
@@ -144,6 +146,18 @@ public class VehicleRentalApp {
                     rentalSystem.displayRentalHistory();
                     break;
                     
+                case 7:
+                    System.out.print("Enter part of the customer's name: ");
+                    String nameQuery = scanner.nextLine();
+                    List<Customer> matches = rentalSystem.lookupCustomers(nameQuery, 20);
+                    if (matches.isEmpty()) {
+                        System.out.println("  No matching customers.");
+                    }
+                    for (Customer match : matches) {
+                        System.out.println("  " + match);
+                    }
+                    break;
+
                 case 0:
                     scanner.close();
                     System.exit(0);
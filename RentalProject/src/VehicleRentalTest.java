@@ -1,9 +1,30 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.SwingUtilities;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,6 +62,11 @@ public class VehicleRentalTest {
         }
     }
 
+    // A RentalSystem over a new temp directory, so tests that rent never write to the shared data files
+    private static RentalSystem isolatedSystem() throws IOException {
+        return new RentalSystem(Files.createTempDirectory("rental-system").toFile());
+    }
+
     @Test
     void testLicensePlate() {
         Vehicle testCar = new Car("Test", "Model", 2020, 4);
@@ -59,6 +85,68 @@ public class VehicleRentalTest {
         assertThrows(IllegalArgumentException.class, () -> testCar.setLicensePlate("123ABC"));
     }
 
+    @Test
+    void testPlateCodec() {
+        // Keys are case-insensitive and round-trip to the upper-case plate
+        assertEquals(PlateCodec.encode("ABC123"), PlateCodec.encode("abc123"));
+        assertEquals("ABC123", PlateCodec.decode(PlateCodec.encode("abc123")));
+        assertEquals(0, PlateCodec.encode("AAA000"));
+        assertEquals(PlateCodec.KEY_SPACE - 1, PlateCodec.encode("ZZZ999"));
+        assertEquals(PlateCodec.INVALID, PlateCodec.encode("AB1234"));
+
+        IntObjectMap<String> map = new IntObjectMap<>(2);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i * 7, "v" + i);
+        }
+        assertEquals(1000, map.size());
+        assertEquals("v500", map.get(3500));
+        assertNull(map.get(3501));
+
+        assertNotNull(rentalSystem.findVehicleByPlate("car123"));
+    }
+
+    @Test
+    void testMakeModelShareOneInstance() {
+        Vehicle first = new Car("toyota", "corolla", 2020, 5);
+        Vehicle second = new Minibus(" TOYOTA ", "COROLLA", 2021, true);
+        assertEquals("Toyota", first.getMake());
+        assertSame(first.getMake(), second.getMake());
+        assertSame(first.getModel(), second.getModel());
+        assertNull(new Car(" ", null, 2020, 5).getMake());
+
+        // The loaders resolve spellings they have seen straight from the file bytes
+        LineCursor cursor = new LineCursor(ByteBuffer.wrap("TOYOTA,Corolla\n".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(cursor.nextLine());
+        assertSame(first.getMake(), cursor.nextName(Vehicle.MAKES));
+        assertSame(first.getModel(), cursor.nextName(Vehicle.MODELS));
+    }
+
+    @Test
+    void testVehicleCodecRoundTrip() {
+        SportCar sport = new SportCar("Porsche", "911", 2022, 2, 450, true);
+        sport.setLicensePlate("SPT911");
+        PickupTruck truck = new PickupTruck("Ford", "F150", 2019, 6.5, false);
+        truck.setLicensePlate("TRK150");
+
+        // Sport cars keep their own fields instead of being saved as plain cars
+        assertEquals("SPT911,Porsche,911,2022,SportCar,2,450,true", VehicleCodec.toText(sport));
+        SportCar parsed = (SportCar) VehicleCodec.parse(LineCursor.of(VehicleCodec.toText(sport)));
+        assertEquals(450, parsed.getHorsepower());
+        assertTrue(parsed.hasTurbo());
+        assertNull(VehicleCodec.parse(LineCursor.of("HOV001,Acme,Hover,2030,Hovercraft,1")));
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        VehicleCodec.write(sport, buffer);
+        VehicleCodec.write(truck, buffer);
+        buffer.flip();
+        Vehicle first = VehicleCodec.read(buffer);
+        Vehicle second = VehicleCodec.read(buffer);
+        assertEquals(VehicleCodec.toText(sport), VehicleCodec.toText(first));
+        assertEquals(VehicleCodec.toText(truck), VehicleCodec.toText(second));
+        assertEquals("Pickup Truck", VehicleCodec.displayName(second));
+        assertFalse(buffer.hasRemaining());
+    }
+
     @Test
     void testRentAndReturnVehicle() {
         // Vehicle should initially be available
@@ -83,6 +171,96 @@ public class VehicleRentalTest {
         assertFalse(returnFail, "Returning available vehicle should fail");
     }
 
+    @Test
+    void testFleetIndexTracksStatus() throws Exception {
+        FleetIndex index = new FleetIndex();
+        Vehicle first = new Car("Honda", "Civic", 2019, 5);
+        Vehicle second = new Minibus("Ford", "Transit", 2021, true);
+        index.refresh(first);
+        index.refresh(second);
+        assertEquals(2, index.count(Vehicle.VehicleStatus.Available));
+
+        first.setStatus(Vehicle.VehicleStatus.Rented);
+        index.refresh(first);
+        index.refresh(first);
+        assertEquals(1, index.count(Vehicle.VehicleStatus.Available));
+        assertEquals(1, index.count(Vehicle.VehicleStatus.Rented));
+        assertEquals(2, index.size());
+
+        first.setStatus(Vehicle.VehicleStatus.Available);
+        index.refresh(first);
+        assertEquals(second, index.list(Vehicle.VehicleStatus.Available).get(0));
+        assertEquals(first, index.list(Vehicle.VehicleStatus.Available).get(1));
+        assertEquals(Arrays.asList(first), index.page(Vehicle.VehicleStatus.Available, 1, 5));
+        assertTrue(index.page(Vehicle.VehicleStatus.Available, 2, 5).isEmpty());
+
+        RentalSystem isolated = isolatedSystem();
+        try {
+            Vehicle registered = new Car("Honda", "Accord", 2020, 5);
+            registered.setLicensePlate("IDX001");
+            assertTrue(isolated.addVehicle(registered));
+            assertTrue(isolated.addCustomer(customer));
+            assertTrue(isolated.rentVehicle(registered, customer, LocalDate.now(), 10.0));
+            assertFalse(isolated.getAvailableVehicles().contains(registered));
+            assertTrue(isolated.returnVehicle(registered, customer, LocalDate.now(), 0.0));
+            assertTrue(isolated.getAvailableVehicles().contains(registered));
+        } finally {
+            isolated.close();
+        }
+    }
+
+    @Test
+    void testVehicleSearch() {
+        VehicleSearchIndex index = new VehicleSearchIndex();
+        Car van = new Car("Toyota", "Sienna", 2021, 8);
+        Car old = new Car("Toyota", "Sienna", 2015, 8);
+        Car sport = new SportCar("Porsche", "911", 2022, 2, 450, true);
+        Minibus bus = new Minibus("Ford", "Transit", 2020, true);
+        PickupTruck truck = new PickupTruck("Ford", "F150", 2019, 6.5, true);
+        PickupTruck small = new PickupTruck("Ford", "Ranger", 2019, 3.0, true);
+        for (Vehicle v : new Vehicle[] {van, old, sport, bus, truck, small}) {
+            index.add(v);
+        }
+
+        assertEquals(Arrays.asList(van),
+                     index.search(new VehicleQuery().type(Car.class).minSeats(7).yearFrom(2020)));
+        assertEquals(Arrays.asList(bus), index.search(new VehicleQuery().accessible(true)));
+        assertEquals(Arrays.asList(truck), index.search(new VehicleQuery().trailer(true).minCargo(5)));
+        assertEquals(3, index.search(new VehicleQuery().make("FORD")).size());
+        assertEquals(3, index.search(new VehicleQuery().type(Car.class)).size());
+        assertTrue(index.search(new VehicleQuery().make("Tesla")).isEmpty());
+        assertEquals(6, index.search(new VehicleQuery()).size());
+        assertTrue(index.search(new VehicleQuery().yearFrom(2022).yearTo(2018)).isEmpty());
+    }
+
+    @Test
+    void testCustomerDirectoryLookup() {
+        CustomerDirectory directory = new CustomerDirectory();
+        directory.add(new Customer("1", "Bob Smithers"));
+        directory.add(new Customer("2", "Smith"));
+        directory.add(new Customer("3", "Anna Goldsmith"));
+        for (int i = 0; i < 200; i++) {
+            directory.add(new Customer("x" + i, "Sam Other" + i));
+        }
+
+        List<Customer> smith = directory.lookup("SMITH", 10);
+        assertEquals(3, smith.size());
+        assertEquals("2", smith.get(0).getCustomerId());        // exact name
+        assertEquals("1", smith.get(1).getCustomerId());        // word prefix
+        assertEquals("3", smith.get(2).getCustomerId());        // inside a word
+        assertEquals(5, directory.lookup("sam other1", 5).size());
+        assertEquals("x150", directory.lookup("other150", 5).get(0).getCustomerId());
+        assertTrue(directory.lookup("zzz", 5).isEmpty());
+
+        // The limit cuts the ranked list, not the first matches found
+        List<Customer> other = directory.lookup("sam other1", 3);
+        assertEquals(Arrays.asList("x1", "x10", "x11"),
+                     Arrays.asList(other.get(0).getCustomerId(), other.get(1).getCustomerId(),
+                                   other.get(2).getCustomerId()));
+        directory.add(new Customer("late", "Sam"));
+        assertEquals("late", directory.lookup("sam", 1).get(0).getCustomerId());
+    }
+
     @Test
     void testSingletonRentalSystem() throws Exception {
         // Validate that the constructor is private
@@ -97,4 +275,523 @@ public class VehicleRentalTest {
         RentalSystem instance2 = RentalSystem.getInstance();
         assertSame(instance, instance2);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testHoldThenConfirm() throws Exception {
+        RentalSystem isolated = isolatedSystem();
+        Vehicle held = new Minibus("Ford", "Transit", 2021, true);
+        held.setLicensePlate("HLD001");
+        Customer other = new Customer("other", "Bob");
+        assertTrue(isolated.addVehicle(held));
+        assertTrue(isolated.addCustomer(customer));
+        assertTrue(isolated.addCustomer(other));
+
+        try {
+            assertTrue(isolated.holdVehicle(held, customer));
+            assertEquals(Vehicle.VehicleStatus.Held, held.getStatus());
+            assertFalse(isolated.rentVehicle(held, other, LocalDate.now(), 10.0), "Held vehicle cannot be rented directly");
+            assertFalse(isolated.confirmHold(held, other, LocalDate.now(), 10.0), "Only the holder can confirm");
+
+            assertTrue(isolated.confirmHold(held, customer, LocalDate.now(), 10.0));
+            assertEquals(Vehicle.VehicleStatus.Rented, held.getStatus());
+            assertFalse(isolated.releaseHold(held, customer));
+        } finally {
+            isolated.close();
+        }
+
+        // Illegal moves are rejected outright
+        assertThrows(IllegalStateException.class,
+            () -> held.tryTransition(Vehicle.VehicleStatus.Rented, Vehicle.VehicleStatus.OutOfService));
+        assertThrows(IllegalStateException.class, () -> held.setStatus(Vehicle.VehicleStatus.UnderMaintenance));
+    }
+
+    @Test
+    void testOpenRentalIndexValidatesReturns() throws Exception {
+        RentalSystem isolated = isolatedSystem();
+        Vehicle van = new Minibus("Ford", "Transit", 2021, false);
+        van.setLicensePlate("RET001");
+        Customer other = new Customer("other", "Bob");
+        LocalDate rented = LocalDate.of(2024, 3, 1);
+        assertTrue(isolated.addVehicle(van));
+        assertTrue(isolated.addCustomer(customer));
+        assertTrue(isolated.addCustomer(other));
+
+        try {
+            assertTrue(isolated.rentVehicle(van, customer, rented, 50.0));
+            assertSame(customer, isolated.getRenter(van));
+            assertFalse(isolated.returnVehicle(van, other, rented.plusDays(3), 0.0), "Only the renter can return");
+            assertEquals(Vehicle.VehicleStatus.Rented, van.getStatus());
+
+            assertTrue(isolated.returnVehicle(van, customer, rented.plusDays(3), 0.0));
+            assertNull(isolated.getRenter(van));
+            List<OpenRentalIndex.ClosedRental> closed = isolated.getClosedRentals(van);
+            assertEquals(1, closed.size());
+            assertEquals(3, closed.get(0).getDays());
+            assertEquals(rented, closed.get(0).getRentedDate());
+            assertSame(customer, closed.get(0).getCustomer());
+        } finally {
+            isolated.close();
+        }
+    }
+
+    @Test
+    void testEventBusDeliversDeltas() throws Exception {
+        RentalSystem isolated = isolatedSystem();
+        Vehicle registered = new Car("Event", "Test", 2024, 4);
+        registered.setLicensePlate("EVT001");
+        assertTrue(isolated.addVehicle(registered));
+        assertTrue(isolated.addCustomer(customer));
+        RentalEventBus bus = isolated.getEventBus();
+        List<RentalEvent.RecordAppended> appended = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(2);
+        RentalEventBus.Subscription<RentalEvent.RecordAppended> records =
+            bus.subscribe(RentalEvent.RecordAppended.class, e -> {
+                appended.add(e);
+                delivered.countDown();
+            });
+        // A stuck subscriber only loses its own events
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch overflowed = new CountDownLatch(1);
+        RentalEventBus.Subscription<RentalEvent> stuck = bus.subscribe(RentalEvent.class, 1, e -> {
+            try {
+                unblock.await();
+            } catch (InterruptedException ignored) {
+            }
+        }, overflowed::countDown);
+
+        try {
+            assertTrue(isolated.rentVehicle(registered, customer, LocalDate.now(), 10.0));
+            assertTrue(isolated.returnVehicle(registered, customer, LocalDate.now(), 0.0));
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals("RENT", appended.get(0).getRecord().getRecordType());
+            assertEquals("RETURN", appended.get(1).getRecord().getRecordType());
+            assertTrue(appended.get(0).getSequence() < appended.get(1).getSequence());
+
+            assertTrue(stuck.getDropped() > 0);
+            unblock.countDown();
+            assertTrue(overflowed.await(5, TimeUnit.SECONDS));
+        } finally {
+            unblock.countDown();
+            records.close();
+            stuck.close();
+            isolated.close();
+        }
+
+        // Racing publishers still reach each subscriber in sequence order
+        RentalEventBus own = new RentalEventBus();
+        List<Long> sequences = new CopyOnWriteArrayList<>();
+        int publishers = 4;
+        int each = 500;
+        CountDownLatch all = new CountDownLatch(publishers * each);
+        RentalEventBus.Subscription<RentalEvent> ordered = own.subscribe(RentalEvent.class, publishers * each, e -> {
+            sequences.add(e.getSequence());
+            all.countDown();
+        }, null);
+        ExecutorService pool = Executors.newFixedThreadPool(publishers);
+        for (int t = 0; t < publishers; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < each; i++) {
+                    own.customerAdded(customer);
+                }
+            });
+        }
+        assertTrue(all.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        for (int i = 1; i < sequences.size(); i++) {
+            assertEquals(sequences.get(i - 1) + 1, (long) sequences.get(i));
+        }
+        ordered.close();
+    }
+
+    @Test
+    void testRentalHistoryIndexes() {
+        checkHistoryIndexes(new RentalHistory());
+        checkHistoryIndexes(new RentalHistory(new CompactHistoryStore(false, 1)));
+        checkHistoryIndexes(new RentalHistory(new CompactHistoryStore(true, 1)));
+    }
+
+    private void checkHistoryIndexes(RentalHistory history) {
+        Customer bob = new Customer("7", "Bob Smith");
+        Vehicle van = new Minibus("Ford", "Transit", 2021, false);
+        van.setLicensePlate("VAN007");
+        history.addRecord(new RentalRecord(car, customer, LocalDate.of(2025, 1, 1), 50.0, "RENT"));
+        history.addRecord(new RentalRecord(van, bob, LocalDate.of(2025, 1, 2), 70.0, "RENT"));
+        history.addRecord(new RentalRecord(car, customer, LocalDate.of(2025, 1, 3), 0.0, "RETURN"));
+
+        assertEquals(2, history.getRentalRecordsByVehicle("car123").size());
+        assertEquals(2, history.getRentalRecordsByCustomerId("1").size());
+        assertEquals(1, history.getRentalRecordsByCustomer("smith").size());
+        // Name search no longer matches the ID text that toString() used to expose
+        assertTrue(history.getRentalRecordsByCustomer("ID:").isEmpty());
+        assertEquals("RETURN", history.getRentalRecordsByCustomer("ali").get(1).getRecordType());
+        // Turkish lowercases I to a dotless i; matching must not depend on the default locale
+        Locale saved = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals(1, history.getRentalRecordsByCustomer("SMITH").size());
+        } finally {
+            Locale.setDefault(saved);
+        }
+
+        assertEquals(2, history.getRecordsBetween(LocalDate.of(2025, 1, 2), LocalDate.of(2025, 1, 31)).count());
+        assertEquals(1, history.getRecordsOn(LocalDate.of(2025, 1, 1)).size());
+        assertEquals(0, history.getRecordsBetween(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)).count());
+
+        RentalRecord first = history.getRentalHistory().get(1);
+        assertEquals("VAN007", first.getVehicle().getLicensePlate());
+        assertEquals("Bob Smith", first.getCustomer().getCustomerName());
+        assertEquals(LocalDate.of(2025, 1, 2), first.getRecordDate());
+        assertEquals(70.0, first.getTotalAmount());
+    }
+
+    @Test
+    void testPagedTableModelFetchesPages() throws Exception {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            numbers.add(i);
+        }
+        PagedTableModel<Integer> model = PagedTableModel.<Integer>builder(selection -> {
+            List<Integer> matches = new ArrayList<>();
+            for (Integer n : numbers) {
+                if (n.toString().contains(selection.filter)) matches.add(n);
+            }
+            selection.sort(matches);
+            return PagedTableModel.listRows(matches);
+        }).sortableColumn("Value", n -> n).build();
+
+        SwingUtilities.invokeAndWait(model::reload);
+        awaitOnEdt(() -> model.getRowCount() == 1000);
+        // Cells are blank until their page has been fetched in the background
+        SwingUtilities.invokeAndWait(() -> assertNull(model.getValueAt(450, 0)));
+        awaitOnEdt(() -> Integer.valueOf(450).equals(model.getValueAt(450, 0)));
+
+        SwingUtilities.invokeAndWait(() -> model.setFilter("99"));
+        awaitOnEdt(() -> model.getRowCount() == 19);
+        SwingUtilities.invokeAndWait(() -> {
+            model.sortBy(0);
+            model.sortBy(0);
+        });
+        awaitOnEdt(() -> Integer.valueOf(999).equals(model.getValueAt(0, 0)));
+        assertEquals("Value \u25BC", model.getColumnName(0));
+    }
+
+    // Polls the condition on the event dispatch thread, as the table would see it
+    private static void awaitOnEdt(BooleanSupplier condition) throws Exception {
+        boolean[] met = new boolean[1];
+        for (int i = 0; i < 500 && !met[0]; i++) {
+            SwingUtilities.invokeAndWait(() -> met[0] = condition.getAsBoolean());
+            if (!met[0]) Thread.sleep(10);
+        }
+        assertTrue(met[0], "Condition not met on the event dispatch thread");
+    }
+
+    @Test
+    void testLazyHistoryLoad() {
+        RentalHistory history = new RentalHistory();
+        history.beginLoading(() -> {
+            history.addLoadedRecord(new RentalRecord(car, customer, LocalDate.of(2025, 1, 1), 50.0, "RENT"));
+            history.finishLoading();
+        });
+        history.addRecord(new RentalRecord(car, customer, LocalDate.of(2025, 1, 3), 0.0, "RETURN"));
+        assertFalse(history.isLoaded());
+
+        // The first query starts the loader and waits for it; records added meanwhile come after
+        List<RentalRecord> records = history.getRentalRecordsByVehicle("CAR123");
+        assertTrue(history.isLoaded());
+        assertEquals(2, records.size());
+        assertEquals("RENT", records.get(0).getRecordType());
+        assertEquals("RETURN", records.get(1).getRecordType());
+    }
+
+    @Test
+    void testLoaderReportsFileProgress() throws Exception {
+        File file = File.createTempFile("records", ".txt");
+        file.deleteOnExit();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line,").append(i).append('\n');
+        }
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+
+        // Small chunks so the file finishes in several steps
+        ParallelDataLoader loader = new ParallelDataLoader(ForkJoinPool.commonPool(), 4096);
+        List<Long> reported = new CopyOnWriteArrayList<>();
+        loader.setProgressListener((name, done, total) -> {
+            assertEquals(file.length(), total);
+            reported.add(done);
+        });
+        assertEquals(5000, loader.submit(file, cursor -> cursor.line()).join().size());
+        assertTrue(reported.size() > 2);
+        assertEquals(file.length(), (long) Collections.max(reported));
+    }
+
+    @Test
+    void testGroupCommitWriterDurability() throws Exception {
+        File file = File.createTempFile("records", ".txt");
+        file.deleteOnExit();
+        try (GroupCommitWriter writer = new GroupCommitWriter(GroupCommitWriter.Durability.FSYNC_ON_BATCH)) {
+            long last = 0;
+            for (int i = 0; i < 1000; i++) {
+                last = writer.append(file.getPath(), "line " + i);
+            }
+            assertTrue(writer.awaitDurable(last, 10, TimeUnit.SECONDS));
+            List<String> lines = Files.readAllLines(file.toPath());
+            assertEquals(1000, lines.size());
+            assertEquals("line 999", lines.get(999));
+        }
+
+        // A directory can't be opened for append, so its batch is never reported durable
+        File dir = Files.createTempDirectory("unwritable").toFile();
+        dir.deleteOnExit();
+        try (GroupCommitWriter writer = new GroupCommitWriter(GroupCommitWriter.Durability.FSYNC_ON_BATCH)) {
+            long good = writer.append(file.getPath(), "before");
+            writer.awaitDurable(good);
+            long bad = writer.append(dir.getPath(), "lost");
+            assertThrows(UncheckedIOException.class, () -> writer.awaitDurable(bad));
+            assertEquals(good, writer.durableSequence());
+            // The failure is confined to that batch; later lines are written as usual
+            long after = writer.append(file.getPath(), "after");
+            assertTrue(writer.awaitDurable(after, 10, TimeUnit.SECONDS));
+            assertThrows(UncheckedIOException.class, () -> writer.awaitDurable(bad));
+            List<String> lines = Files.readAllLines(file.toPath());
+            assertEquals("after", lines.get(lines.size() - 1));
+        }
+    }
+
+    @Test
+    void testHistorySegmentFileRoundTrip() throws Exception {
+        File text = File.createTempFile("records", ".txt");
+        File binary = File.createTempFile("records", ".seg");
+        File back = File.createTempFile("records", ".txt");
+        text.deleteOnExit();
+        binary.deleteOnExit();
+        back.deleteOnExit();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // writeUTF encodes NUL and characters outside the BMP differently from UTF-8
+            String customerId = i == 0 ? "C\u0000" : i == 1 ? "C\uD83D\uDE97" : "C" + i;
+            lines.add((i % 2 == 0 ? "RENT" : "RETURN") + ",ABC12" + i + "," + customerId + ","
+                      + LocalDate.of(2024, 1, 1).plusDays(i) + "," + (i * 10.5));
+        }
+        Files.write(text.toPath(), lines);
+
+        assertEquals(10, HistorySegmentFile.fromText(text, binary, 4));
+        HistorySegmentFile file = HistorySegmentFile.open(binary);
+        assertEquals(3, file.segmentCount());
+        assertEquals(3, file.count(LocalDate.of(2024, 1, 3), LocalDate.of(2024, 1, 5)));
+        List<String> customers = new ArrayList<>();
+        file.scan(LocalDate.of(2024, 1, 9), LocalDate.of(2024, 1, 31),
+                  (day, plate, customerId, type, cents) -> customers.add(customerId));
+        assertEquals(2, customers.size());
+        assertEquals("C8", customers.get(0));
+
+        assertEquals(10, HistorySegmentFile.toText(binary, back));
+        assertEquals(lines, Files.readAllLines(back.toPath()));
+
+        // A segment offset past the end of the file is rejected on open
+        byte[] truncated = Arrays.copyOf(Files.readAllBytes(binary.toPath()), (int) binary.length() - 1);
+        Files.write(binary.toPath(), truncated);
+        assertThrows(IOException.class, () -> HistorySegmentFile.open(binary));
+    }
+
+    @Test
+    void testSegmentedRentalLogArchivesColdSegments() throws Exception {
+        File dir = Files.createTempDirectory("rental-log").toFile();
+        try (GroupCommitWriter writer = new GroupCommitWriter(GroupCommitWriter.Durability.FLUSH_ON_BATCH)) {
+            SegmentedRentalLog log = new SegmentedRentalLog(dir, "rental_records.txt", writer, 1 << 20, true);
+            log.recover();
+            for (int month = 1; month <= 3; month++) {
+                for (int day = 1; day <= 10; day++) {
+                    LocalDate date = LocalDate.of(2024, month, day);
+                    log.append("RENT,ABC123,C" + month + "," + date + ",10.0", date);
+                }
+            }
+            writer.flush();
+            log.awaitArchived();
+
+            List<SegmentedRentalLog.Segment> cold = log.segments();
+            assertEquals(2, cold.size());
+            assertEquals(20, SegmentedRentalLog.countRecords(cold));
+            assertEquals(10, Files.readAllLines(log.getHotFile().toPath()).size());
+            List<String> february = log.read(cold, (int) LocalDate.of(2024, 2, 3).toEpochDay(),
+                                             (int) LocalDate.of(2024, 2, 4).toEpochDay(), LineCursor::line);
+            assertEquals(2, february.size());
+            assertEquals("RENT,ABC123,C2,2024-02-03,10.0", february.get(0));
+            // Key filters let lookups skip blocks without the plate or customer
+            assertEquals(10, log.readCustomers(cold, Arrays.asList("C2"), LineCursor::line).size());
+            assertEquals(20, log.readPlate(cold, PlateCodec.encode("ABC123"), LineCursor::line).size());
+            assertEquals(0, log.readPlate(cold, PlateCodec.encode("XYZ999"), LineCursor::line).size());
+
+            SegmentedRentalLog reopened = new SegmentedRentalLog(dir, "rental_records.txt", writer, 1 << 20, true);
+            reopened.recover();
+            assertEquals(2, reopened.segments().size());
+
+            // A pinned hot file stays readable after the hot file is rotated away
+            ByteBuffer pinned = log.pinHot(log.getHotFile().length());
+            log.rotate();
+            writer.flush();
+            log.awaitArchived();
+            assertFalse(log.getHotFile().exists());
+            assertEquals(10, SegmentedRentalLog.read(pinned, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                                                     LineCursor::line).size());
+        }
+    }
+
+    @Test
+    void testFleetSnapshotIsPointInTime() throws Exception {
+        // Enough elements to need a second tree level; older versions keep their values
+        PersistentVector<Integer> numbers = PersistentVector.empty();
+        for (int i = 0; i < 1100; i++) {
+            numbers = numbers.add(i);
+        }
+        PersistentVector<Integer> changed = numbers.set(40, -1).set(1099, -2);
+        assertEquals(1100, changed.size());
+        assertEquals(Integer.valueOf(40), numbers.get(40));
+        assertEquals(Integer.valueOf(-1), changed.get(40));
+        assertEquals(Integer.valueOf(-2), changed.get(1099));
+        assertEquals(Integer.valueOf(1024), changed.asList().get(1024));
+
+        // Reading a history prefix never waits for the monitor addRecord takes
+        RentalHistory history = new RentalHistory(new CompactHistoryStore(false));
+        Vehicle car = new Car("Prefix", "Test", 2024, 4);
+        car.setLicensePlate("PFX001");
+        Customer renter = new Customer("PFX1", "Prefix Renter");
+        for (int i = 0; i < 3; i++) {
+            history.addRecord(new RentalRecord(car, renter, LocalDate.of(2024, 1, 1 + i), 10.0, "RENT"));
+        }
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            synchronized (history) {
+                assertEquals(2, reader.submit(() -> history.getRentalHistory(2).size()).get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            reader.shutdownNow();
+        }
+
+        RentalSystem isolated = isolatedSystem();
+        try {
+            assertTrue(isolated.addCustomer(customer));
+            FleetSnapshot before = isolated.getSnapshot();
+            Vehicle added = new Car("Snapshot", "Test", 2024, 4);
+            added.setLicensePlate("SNP001");
+            assertTrue(isolated.addVehicle(added));
+            assertTrue(isolated.rentVehicle(added, customer, LocalDate.now(), 10.0));
+
+            FleetSnapshot after = isolated.getSnapshot();
+            assertTrue(after.getVersion() > before.getVersion());
+            assertFalse(before.getVehicles().contains(added));
+            int index = after.getVehicles().indexOf(added);
+            assertEquals(Vehicle.VehicleStatus.Rented, after.getStatus(index));
+            assertTrue(after.getVehicles(Vehicle.VehicleStatus.Rented).contains(added));
+            assertEquals(0, before.getRentalHistory().size());
+            assertEquals(1, after.getRentalHistory().size());
+
+            // Later changes never reach a snapshot already taken
+            isolated.returnVehicle(added, customer, LocalDate.now(), 0.0);
+            assertEquals(Vehicle.VehicleStatus.Rented, after.getStatus(index));
+            assertEquals(1, after.getRentalHistory().size());
+            assertEquals(Vehicle.VehicleStatus.Available,
+                         isolated.getSnapshot().getStatus(index));
+        } finally {
+            isolated.close();
+        }
+    }
+
+    @Test
+    void testStatusTimelineReplaysFromCheckpoints() {
+        RentalHistory history = new RentalHistory();
+        List<Vehicle> fleet = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Vehicle v = new Car("Timeline", "Test", 2024, 4);
+            v.setLicensePlate(String.format("TML%03d", i));
+            fleet.add(v);
+        }
+        // Each vehicle goes out for i + 1 days, over and over, starting a day apart
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < fleet.size(); i++) {
+            for (int day = i; day < 60; day += 2 * (i + 1)) {
+                history.addRecord(new RentalRecord(fleet.get(i), customer, start.plusDays(day), 10.0, "RENT"));
+                history.addRecord(new RentalRecord(fleet.get(i), customer, start.plusDays(day + i + 1), 0.0, "RETURN"));
+            }
+        }
+        StatusTimeline timeline = new StatusTimeline(history, 4);
+        LocalDate last = start.plusDays(80);
+        assertEquals(0, timeline.rentedOn(last).length);
+        assertTrue(timeline.checkpointCount() > 0);
+
+        // Checkpointed answers match a replay from the start, in any query order
+        for (int day = 70; day >= -1; day -= 3) {
+            LocalDate date = start.plusDays(day);
+            List<Integer> expected = new ArrayList<>();
+            for (Vehicle v : fleet) {
+                boolean out = false;
+                for (RentalRecord r : history.getRentalRecordsByVehicle(v.getLicensePlate())) {
+                    if (!r.getRecordDate().isAfter(date)) out = "RENT".equals(r.getRecordType());
+                }
+                if (out) expected.add(v.getPlateKey());
+            }
+            int[] actual = timeline.rentedOn(date);
+            assertEquals(expected.size(), actual.length, "rented on " + date);
+            for (int plateKey : expected) {
+                assertTrue(timeline.isRentedOn(plateKey, date));
+            }
+        }
+
+        // A late record before the checkpoints replaces them instead of being missed
+        Vehicle late = fleet.get(4);
+        history.addRecord(new RentalRecord(late, customer, start.plusDays(1), 10.0, "RENT"));
+        timeline.recordAdded(start.plusDays(1));
+        assertTrue(timeline.isRentedOn(late.getPlateKey(), start.plusDays(3)));
+
+        assertEquals(Vehicle.VehicleStatus.Available, rentalSystem.getStatusAsOf("CAR123", LocalDate.of(1990, 1, 1)));
+        assertTrue(rentalSystem.getVehiclesOutOn(LocalDate.of(1990, 1, 1)).isEmpty());
+    }
+
+    @Test
+    void testConcurrentRentalsNeverDoubleRent() throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int vehicleCount = 32;
+        RentalSystem isolated = isolatedSystem();
+        assertTrue(isolated.addCustomer(customer));
+        List<Vehicle> fleet = new ArrayList<>();
+        for (int i = 0; i < vehicleCount; i++) {
+            Vehicle v = new Car("Stress", "Test", 2024, 4);
+            v.setLicensePlate(String.format("STR%03d", i));
+            assertTrue(isolated.addVehicle(v));
+            fleet.add(v);
+        }
+
+        // Every thread tries to rent every vehicle at the same moment
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                int wins = 0;
+                for (Vehicle v : fleet) {
+                    if (isolated.rentVehicle(v, customer, LocalDate.now(), 1.0)) wins++;
+                }
+                return wins;
+            }));
+        }
+        start.countDown();
+        int totalWins = 0;
+        for (Future<Integer> f : results) {
+            totalWins += f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        try {
+            assertEquals(vehicleCount, totalWins, "Each vehicle must be rented exactly once");
+            for (Vehicle v : fleet) {
+                assertEquals(Vehicle.VehicleStatus.Rented, v.getStatus());
+                assertSame(customer, isolated.getRenter(v));
+            }
+            // Losing attempts leave nothing behind in the history
+            assertEquals(vehicleCount, isolated.getRentalHistory().getRentalHistory().size());
+        } finally {
+            isolated.close();
+        }
+    }
+}
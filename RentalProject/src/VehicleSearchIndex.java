@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Secondary indexes over the fleet for VehicleQuery. Each vehicle gets an
+ * ordinal in insertion order, and every index maps a value to the ordinals
+ * that have it: inverted indexes on make, model and type, sorted indexes on
+ * year, seats and cargo size, and flag lists for accessibility and trailers.
+ *
+ * A search estimates how many vehicles each criterion admits, reads the
+ * postings of the most selective one and checks the remaining criteria on
+ * just those vehicles, so its cost follows the smallest index hit rather
+ * than the fleet size.
+ */
+public class VehicleSearchIndex {
+    private final List<Vehicle> vehicles = new ArrayList<>();
+    private final Map<String, IntList> byMake = new HashMap<>();
+    private final Map<String, IntList> byModel = new HashMap<>();
+    private final Map<Class<?>, IntList> byType = new HashMap<>();
+    private final NavigableMap<Integer, IntList> byYear = new TreeMap<>();
+    private final NavigableMap<Integer, IntList> bySeats = new TreeMap<>();
+    private final NavigableMap<Double, IntList> byCargo = new TreeMap<>();
+    private final IntList[] byAccessible = { new IntList(), new IntList() };
+    private final IntList[] byTrailer = { new IntList(), new IntList() };
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // One way of producing candidates, with the number it would produce
+    private static final class Plan {
+        final int estimate;
+        final List<IntList> postings;
+
+        Plan(List<IntList> postings) {
+            int total = 0;
+            for (IntList list : postings) {
+                total += list.size();
+            }
+            this.estimate = total;
+            this.postings = postings;
+        }
+    }
+
+    public void add(Vehicle vehicle) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = vehicles.size();
+            vehicles.add(vehicle);
+            if (vehicle.getMake() != null) post(byMake, vehicle.getMake().toLowerCase(Locale.ROOT), ordinal);
+            if (vehicle.getModel() != null) post(byModel, vehicle.getModel().toLowerCase(Locale.ROOT), ordinal);
+            for (Class<?> type = vehicle.getClass(); type != Vehicle.class; type = type.getSuperclass()) {
+                post(byType, type, ordinal);
+            }
+            post(byYear, vehicle.getYear(), ordinal);
+            if (vehicle instanceof Car) {
+                post(bySeats, ((Car) vehicle).getNumberOfSeats(), ordinal);
+            }
+            if (vehicle instanceof Minibus) {
+                byAccessible[((Minibus) vehicle).isAccessible() ? 1 : 0].add(ordinal);
+            }
+            if (vehicle instanceof PickupTruck) {
+                PickupTruck truck = (PickupTruck) vehicle;
+                post(byCargo, truck.getCargoSize(), ordinal);
+                byTrailer[truck.hasTrailer() ? 1 : 0].add(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return vehicles.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Matches in insertion order
+    public List<Vehicle> search(VehicleQuery query) {
+        lock.readLock().lock();
+        try {
+            Plan best = null;
+            for (Plan plan : plans(query)) {
+                if (best == null || plan.estimate < best.estimate) best = plan;
+            }
+            List<Vehicle> result = new ArrayList<>();
+            if (best == null) {
+                for (Vehicle vehicle : vehicles) {
+                    if (query.matches(vehicle)) result.add(vehicle);
+                }
+                return result;
+            }
+            for (int ordinal : candidates(best)) {
+                Vehicle vehicle = vehicles.get(ordinal);
+                if (query.matches(vehicle)) result.add(vehicle);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Plan> plans(VehicleQuery query) {
+        List<Plan> plans = new ArrayList<>();
+        if (query.make != null) plans.add(exact(byMake.get(query.make)));
+        if (query.model != null) plans.add(exact(byModel.get(query.model)));
+        if (query.type != null) plans.add(exact(byType.get(query.type)));
+        if (query.minYear > query.maxYear) {
+            // An inverted range admits nothing; subMap would reject it
+            plans.add(exact(null));
+        } else if (query.minYear != Integer.MIN_VALUE || query.maxYear != Integer.MAX_VALUE) {
+            plans.add(new Plan(new ArrayList<>(byYear.subMap(query.minYear, true, query.maxYear, true).values())));
+        }
+        if (query.minSeats != Integer.MIN_VALUE) {
+            plans.add(new Plan(new ArrayList<>(bySeats.tailMap(query.minSeats, true).values())));
+        }
+        if (query.minCargo != Double.NEGATIVE_INFINITY) {
+            plans.add(new Plan(new ArrayList<>(byCargo.tailMap(query.minCargo, true).values())));
+        }
+        if (query.accessible != null) plans.add(exact(byAccessible[query.accessible ? 1 : 0]));
+        if (query.trailer != null) plans.add(exact(byTrailer[query.trailer ? 1 : 0]));
+        return plans;
+    }
+
+    private static Plan exact(IntList postings) {
+        List<IntList> lists = new ArrayList<>();
+        if (postings != null) lists.add(postings);
+        return new Plan(lists);
+    }
+
+    // Range plans span several postings; merge them back into ordinal order
+    private static int[] candidates(Plan plan) {
+        if (plan.postings.size() == 1) {
+            return plan.postings.get(0).toArray();
+        }
+        int[] ordinals = new int[plan.estimate];
+        int n = 0;
+        for (IntList list : plan.postings) {
+            for (int i = 0; i < list.size(); i++) {
+                ordinals[n++] = list.get(i);
+            }
+        }
+        Arrays.sort(ordinals);
+        return ordinals;
+    }
+
+    private static <K> void post(Map<K, IntList> index, K key, int ordinal) {
+        IntList postings = index.get(key);
+        if (postings == null) {
+            postings = new IntList();
+            index.put(key, postings);
+        }
+        postings.add(ordinal);
+    }
+}